@@ -0,0 +1,24 @@
+package frc.robot.modules.bench;
+
+import frc.robot.modules.sim.SimEnvironment;
+
+/**
+ * Sets up the simulated HAL so that benchmarks can run headless on a desktop machine.
+ */
+public final class BenchEnvironment {
+
+    private static boolean initialized = false;
+
+    private BenchEnvironment() {}
+
+    /**
+     * Initializes the simulated HAL and enables the simulated robot. Safe to call more than once.
+     */
+    public static synchronized void initialize() {
+        if (initialized) return;
+
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+        initialized = true;
+    }
+}
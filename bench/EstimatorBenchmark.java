@@ -0,0 +1,136 @@
+package frc.robot.modules.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.modules.pid.RioSetpointController;
+import frc.robot.modules.sim.SimHarness;
+import frc.robot.modules.sim.SimMotorController;
+
+/**
+ * Compares how fast a simulated mechanism settles with and without {@code RioSetpointController.Builder.withEstimator},
+ * when its position sensor is noisy and one cycle stale, like a CAN encoder. Each invocation is one move, simulated
+ * faster than real time with a {@link SimHarness}.
+ * <p>
+ * Besides the time per move, the {@link Settling} counters report the total simulated cycles it took to settle
+ * ({@code settleCycles}), the number of moves which settled ({@code settledMoves}), and the number which did not
+ * settle within {@link #MAX_CYCLES} ({@code unsettledMoves}). Divide {@code settleCycles} by {@code settledMoves} for the mean.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstimatorBenchmark {
+
+    /**
+     * The longest a move is simulated for, 10 seconds at 50 Hz.
+     */
+    public static final int MAX_CYCLES = 500;
+
+    private static final int SETTLED_CYCLES = 10;
+    private static final double TOLERANCE = 0.02;
+    private static final double SENSOR_NOISE = 0.005;
+
+    @Param({"false", "true"})
+    public boolean estimator;
+
+    @Param({"2", "6"})
+    public double kP;
+
+    private SimHarness harness;
+    private SimMotorController motor;
+    private RioSetpointController controller;
+
+    private final Random noise = new Random(42);
+    private double staleReading = 0;
+    private double target = 0;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Settling {
+        public long settleCycles;
+        public long settledMoves;
+        public long unsettledMoves;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            settleCycles = 0;
+            settledMoves = 0;
+            unsettledMoves = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        harness = new SimHarness(0.02);
+        var gearbox = DCMotor.getNEO(1);
+        motor = SimMotorController.fromDCMotorSim(
+            new DCMotorSim(LinearSystemId.createDCMotorSystem(gearbox, 0.004, 10), gearbox));
+        harness.withMotor(motor);
+
+        var builder = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(kP, 0, 0.05))
+            .usingMotorController(motor)
+            .withCurrentPositionSupplier(this::readSensor, motor::resetEncoder);
+        if (estimator) {
+            builder.withEstimator(0.5, 0.1, 0.02);
+        }
+        controller = builder.retrieveProduct();
+
+        harness.setEnabled(true);
+    }
+
+    /**
+     * Returns the encoder position from one cycle ago, with noise.
+     */
+    private double readSensor() {
+        var reading = staleReading;
+        staleReading = motor.getEncoderPosition() + noise.nextGaussian() * SENSOR_NOISE;
+        return reading;
+    }
+
+    /**
+     * Moves back and forth between 0 and 1, until the true position stays within the tolerance of the target.
+     */
+    @Benchmark
+    public int move(Settling settling) {
+        target = (target == 1) ? 0 : 1;
+        controller.setSetpoint(target);
+
+        var settledFor = 0;
+        for (var cycle = 1; cycle <= MAX_CYCLES; cycle++) {
+            harness.step();
+
+            settledFor = (Math.abs(motor.getTruePosition() - target) < TOLERANCE) ? settledFor + 1 : 0;
+            if (settledFor == SETTLED_CYCLES) {
+                settling.settleCycles += cycle;
+                settling.settledMoves++;
+                return cycle;
+            }
+        }
+
+        settling.unsettledMoves++;
+        return MAX_CYCLES;
+    }
+}
@@ -0,0 +1,94 @@
+package frc.robot.modules.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.LimitSwitchBank;
+import frc.robot.modules.stubs.StubSetpointController;
+
+/**
+ * Measures the cost of polling a {@link LimitSwitchBank}, of reading {@link LimitSwitch#isPressed()} afterwards, and of
+ * enforcing held limit switches on the setpoint controllers they belong to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LimitSwitchBenchmark {
+
+    @Param({"1", "8", "16", "64"})
+    public int switchCount;
+
+    private LimitSwitch[] switches;
+    private boolean[] inputs;
+    private StubSetpointController[] controllers;
+
+    @Setup
+    public void setup() {
+        BenchEnvironment.initialize();
+
+        switches = new LimitSwitch[switchCount];
+        inputs = new boolean[switchCount];
+        controllers = new StubSetpointController[switchCount];
+
+        for (int i = 0; i < switchCount; i++) {
+            final int index = i;
+            switches[i] = new LimitSwitch(() -> inputs[index], i % 2 == 0, false);
+
+            controllers[i] = new StubSetpointController();
+            controllers[i].withLimitSwitches(switches[i], null);
+            controllers[i].setCurrentPosition(0.5);
+        }
+    }
+
+    /**
+     * Reads every switch and finds the ones that changed. Half of the inputs are flipped every call, so that edges are dispatched.
+     */
+    @Benchmark
+    public int pollBank() {
+        for (int i = 0; i < inputs.length; i += 2) {
+            inputs[i] = !inputs[i];
+        }
+        LimitSwitchBank.getDefault().poll();
+        return LimitSwitchBank.getDefault().size();
+    }
+
+    @Benchmark
+    public int isPressed() {
+        int pressed = 0;
+        for (int i = 0; i < switches.length; i++) {
+            if (switches[i].isPressed()) pressed++;
+        }
+        return pressed;
+    }
+
+    /**
+     * One control loop pass with every switch held, while each controller is commanded past its switch: the bank is
+     * polled, and every controller's setpoint is pulled back to its current position.
+     */
+    @Benchmark
+    public double enforceHeldSwitches() {
+        for (int i = 0; i < switches.length; i++) {
+            // Inverted switches are pressed when their input is false.
+            inputs[i] = i % 2 != 0;
+            controllers[i].setSetpoint(1);
+        }
+        ControlLoop.run();
+        return controllers[0].getSetpoint();
+    }
+}
@@ -0,0 +1,69 @@
+package frc.robot.modules.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.modules.stubs.StubMotorController;
+
+/**
+ * Measures the cost of {@link frc.robot.modules.motors.MotorController#setSpeed(double)}, both for independent
+ * controllers and for a leader fanning out to its followers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorControllerBenchmark {
+
+    @Param({"1", "8", "16", "64"})
+    public int controllerCount;
+
+    @Param({"0", "1", "3", "6"})
+    public int followerCount;
+
+    private StubMotorController[] leaders;
+    private double speed;
+
+    @Setup
+    public void setup() {
+        leaders = new StubMotorController[controllerCount];
+
+        for (int i = 0; i < controllerCount; i++) {
+            leaders[i] = new StubMotorController();
+
+            // Chain the followers, so that deeper follower trees are exercised as well.
+            var leader = leaders[i];
+            for (int j = 0; j < followerCount; j++) {
+                var follower = new StubMotorController();
+                follower.follow(leader, j % 2 == 0);
+                leader = follower;
+            }
+        }
+    }
+
+    /**
+     * One robot cycle: every leader is given a new speed, and its followers are updated.
+     */
+    @Benchmark
+    public double setSpeed() {
+        speed = (speed > 0.9) ? -0.9 : speed + 0.01;
+
+        for (int i = 0; i < leaders.length; i++) {
+            leaders[i].setSpeed(speed);
+        }
+        return speed;
+    }
+}
@@ -0,0 +1,75 @@
+package frc.robot.modules.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.pid.RioSetpointController;
+import frc.robot.modules.stubs.StubMotorController;
+
+/**
+ * Measures the cost of one scheduler cycle driving {@link RioSetpointController}s, optionally with limit switches
+ * held down so that {@code SetpointController.withLimitSwitches} enforcement runs every cycle as well.
+ * Each parameter combination runs in its own fork, because controllers register themselves with the
+ * {@link frc.robot.modules.ControlLoop} singleton.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetpointControllerBenchmark {
+
+    @Param({"1", "8", "16", "64"})
+    public int controllerCount;
+
+    @Param({"false", "true"})
+    public boolean limitSwitchesPressed;
+
+    private double position;
+
+    @Setup
+    public void setup() {
+        BenchEnvironment.initialize();
+
+        for (int i = 0; i < controllerCount; i++) {
+            var motor = new StubMotorController();
+
+            var controller = new RioSetpointController.Builder()
+                .usingStandardPID(new PIDConstants(0.1, 0, 0.01))
+                .usingMotorController(motor)
+                .withCurrentPositionSupplier(() -> position, () -> position = 0)
+                .withLimitSwitches(
+                    new LimitSwitch(() -> limitSwitchesPressed, false, false),
+                    new LimitSwitch(() -> false, false, false))
+                .retrieveProduct();
+
+            controller.setSetpoint(10);
+        }
+    }
+
+    /**
+     * One robot cycle: the scheduler runs the control loop, which enforces the limit switches and updates every controller.
+     */
+    @Benchmark
+    public double schedulerCycle() {
+        position = (position > 20) ? 0 : position + 0.1;
+        CommandScheduler.getInstance().run();
+        return position;
+    }
+}
@@ -0,0 +1,31 @@
+package frc.robot.modules;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Counts scheduler cycles, so that values which should only be computed once per cycle (such as sensor readings)
+ * can tell when they are stale. The count is advanced by the {@link ControlLoop} at the start of every
+ * {@link CommandScheduler#run()}, before any triggers are polled or commands are executed, and before the periodic
+ * method of any subsystem registered after {@link ControlLoop#install()}. Should only be used from the main robot thread.
+ */
+public final class ControlCycle {
+
+    private static long cycle = 0;
+
+    private ControlCycle() {}
+
+    /**
+     * Gets the number of the current scheduler cycle.
+     * @return A number that changes every time the scheduler runs.
+     */
+    public static long getCycle() {
+        return cycle;
+    }
+
+    /**
+     * Starts a new cycle. Called by the {@link ControlLoop} before any of its members read their sensors.
+     */
+    static void advance() {
+        cycle++;
+    }
+}
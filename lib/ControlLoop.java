@@ -0,0 +1,321 @@
+package frc.robot.modules;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * A single registry of everything that must be updated every scheduler cycle, such as setpoint controllers.
+ * Instead of scheduling one command per controller, all members are updated in one pass every cycle, in three phases:
+ * first every member reads its sensors, then every member calculates its output, then every member writes its output.
+ * Within a phase, members are updated by {@link Priority}, then in the order they were registered.
+ * <p>
+ * Sensors are read at the start of every {@link CommandScheduler#run()}, before any triggers are polled or commands are
+ * executed. Outputs are calculated and written by {@link #finishCycle()}, which should be called right after the
+ * scheduler runs, so that setpoints set by commands take effect in the same cycle:
+ * <pre>
+ * public void robotPeriodic() {
+ *     CommandScheduler.getInstance().run();
+ *     ControlLoop.finishCycle();
+ * }
+ * </pre>
+ * If {@link #finishCycle()} is never called, the whole pass runs at the start of the scheduler run, and setpoints set by
+ * triggers and commands only take effect on the next cycle.
+ * <p>
+ * Each pass has a time budget (see {@link #setTimeBudget(double)}). After a pass goes over budget, the loop is degraded
+ * for at least {@link #DEGRADED_CYCLES} cycles, during which members below {@link Priority#CRITICAL} are only updated
+ * every few cycles. Once the budget runs out partway through a pass, those members are skipped for the rest of it.
+ * A skipped member holds its last output.
+ * Should only be used from the main robot thread.
+ */
+public final class ControlLoop {
+
+    /**
+     * Something that is updated by the {@link ControlLoop} every cycle.
+     */
+    public interface Member {
+
+        /**
+         * Reads any sensors needed by this member. Called before any member calculates its output.
+         */
+        public default void sense() {}
+
+        /**
+         * Calculates the output of this member, without writing it. Called after every member has read its sensors.
+         */
+        public default void calculate() {}
+
+        /**
+         * Writes the output of this member. Called after every member has calculated its output.
+         */
+        public default void output() {}
+
+        /**
+         * Called instead of the other methods when this member is skipped for a cycle, because the loop is over budget.
+         */
+        public default void onSkipped() {}
+    }
+
+    /**
+     * How important it is for a member to be updated every cycle when the loop is over budget.
+     */
+    public enum Priority {
+        /** Always updated, such as drivetrains and limit switches. */
+        CRITICAL(1),
+        /** Updated every 2nd cycle while over budget. */
+        NORMAL(2),
+        /** Updated every 4th cycle while over budget, such as intakes. */
+        BEST_EFFORT(4);
+
+        private final int decimation;
+
+        private Priority(int decimation) {
+            this.decimation = decimation;
+        }
+
+        /**
+         * Gets how many cycles pass between updates of members with this priority while the loop is over budget.
+         */
+        public int getDecimation() {
+            return decimation;
+        }
+    }
+
+    private static Member[] members = new Member[0];
+    private static Priority[] priorities = new Priority[0];
+    private static boolean[] active = new boolean[0];
+    // The number of members at the end of the array which were registered with registerLast().
+    private static int lastMembers = 0;
+    private static boolean registered = false;
+
+    // Set once the robot calls finishCycle(), after which the scheduler only runs the sense phase.
+    private static boolean finishedByRobot = false;
+    private static boolean passPending = false;
+    private static long senseNanos = 0;
+
+    /**
+     * How many cycles in a row must be under budget before the loop stops being degraded.
+     */
+    public static final int DEGRADED_CYCLES = 25;
+
+    private static long budgetNanos = 10_000_000;
+    private static int degradedCyclesLeft = 0;
+    private static long cycle = 0;
+    private static long lastPassNanos = 0;
+    private static final long[] skippedUpdates = new long[Priority.values().length];
+
+    private ControlLoop() {}
+
+    /**
+     * Adds a critical member to the control loop, which will be updated every cycle from now on.
+     * @param member The member to add.
+     */
+    public static void register(Member member) {
+        register(member, Priority.CRITICAL);
+    }
+
+    /**
+     * Adds a member to the control loop, which will be updated every cycle from now on, unless the loop is over budget.
+     * @param member The member to add.
+     * @param priority How important it is to update the member every cycle.
+     */
+    public static void register(Member member, Priority priority) {
+        install();
+
+        // Insert after every member of the same or a higher priority, so that each priority keeps its registration order.
+        var index = 0;
+        while (index < members.length - lastMembers && priorities[index].ordinal() <= priority.ordinal()) {
+            index++;
+        }
+        insert(index, member, priority);
+    }
+
+    /**
+     * Adds a critical member to the control loop, ahead of every member already registered, so that it is always updated
+     * first in each phase. Meant for members that the others depend on, such as a {@link LimitSwitchBank}.
+     * @param member The member to add.
+     */
+    public static void registerFirst(Member member) {
+        install();
+        insert(0, member, Priority.CRITICAL);
+    }
+
+    /**
+     * Adds a critical member to the control loop, behind every other member, so that it is always updated last in each
+     * phase. Meant for members that act on what the others did, such as a {@code PowerBudget} scaling their outputs.
+     * @param member The member to add.
+     */
+    public static void registerLast(Member member) {
+        install();
+        insert(members.length, member, Priority.CRITICAL);
+        lastMembers++;
+    }
+
+    private static void insert(int index, Member member, Priority priority) {
+        var newMembers = new Member[members.length + 1];
+        var newPriorities = new Priority[members.length + 1];
+
+        System.arraycopy(members, 0, newMembers, 0, index);
+        System.arraycopy(priorities, 0, newPriorities, 0, index);
+        newMembers[index] = member;
+        newPriorities[index] = priority;
+        System.arraycopy(members, index, newMembers, index + 1, members.length - index);
+        System.arraycopy(priorities, index, newPriorities, index + 1, members.length - index);
+
+        // A member may be registered by a command, in between the phases of a pass, so the others stay active for the rest of it.
+        var newActive = new boolean[members.length + 1];
+        System.arraycopy(active, 0, newActive, 0, index);
+        System.arraycopy(active, index, newActive, index + 1, members.length - index);
+
+        members = newMembers;
+        priorities = newPriorities;
+        active = newActive;
+    }
+
+    /**
+     * Registers the control loop with the {@link CommandScheduler}. The scheduler runs subsystems in the order they were
+     * registered, so this should be called at the start of {@code robotInit()}, before any subsystems are created, for the
+     * loop to run (and advance the {@link ControlCycle}) before any subsystem's periodic method. Otherwise, it is called
+     * when the first member is registered or the first {@link SensorSnapshot} is created. Must not be called from within
+     * a scheduler cycle, as the scheduler cannot register subsystems while it runs them. Does nothing if already called.
+     */
+    public static void install() {
+        if (!registered) {
+            registered = true;
+            CommandScheduler.getInstance().registerSubsystem(new LoopRunner());
+        }
+    }
+
+    /**
+     * Sets how long each pass of the control loop may take before lower priority members are skipped.
+     * @param seconds The time budget of each pass. Defaults to 10 ms, half of the default robot loop period.
+     */
+    public static void setTimeBudget(double seconds) {
+        budgetNanos = (long)(seconds * 1e9);
+    }
+
+    /**
+     * Is the control loop degraded, because it went over budget recently?
+     */
+    public static boolean isDegraded() {
+        return degradedCyclesLeft > 0;
+    }
+
+    /**
+     * Gets how long the last pass of the control loop took.
+     * @return The duration of the last pass, in seconds.
+     */
+    public static double getLastPassDuration() {
+        return lastPassNanos / 1e9;
+    }
+
+    /**
+     * Gets the number of times members of a priority were skipped because the loop was over budget.
+     */
+    public static long getSkippedUpdates(Priority priority) {
+        return skippedUpdates[priority.ordinal()];
+    }
+
+    /**
+     * Updates every member of the control loop, running all three phases at once. Called automatically every scheduler
+     * cycle, unless the robot calls {@link #finishCycle()}.
+     */
+    public static void run() {
+        startPass();
+        finishPass();
+    }
+
+    /**
+     * Calculates and writes the outputs of every member, finishing the pass that was started at the beginning of the
+     * last {@link CommandScheduler#run()}. Should be called right after the scheduler runs, so that setpoints set by
+     * triggers and commands take effect in the same cycle. Once this has been called, the scheduler only reads sensors.
+     */
+    public static void finishCycle() {
+        finishedByRobot = true;
+        if (passPending) {
+            finishPass();
+        }
+    }
+
+    private static void startPass() {
+        var members = ControlLoop.members;
+        var priorities = ControlLoop.priorities;
+        var active = ControlLoop.active;
+        var start = System.nanoTime();
+        cycle++;
+        ControlCycle.advance();
+
+        for (int i = 0; i < members.length; i++) {
+            active[i] = shouldUpdate(i, priorities[i], start);
+            if (active[i]) {
+                members[i].sense();
+            } else {
+                skippedUpdates[priorities[i].ordinal()]++;
+                members[i].onSkipped();
+            }
+        }
+
+        senseNanos = System.nanoTime() - start;
+        passPending = true;
+    }
+
+    private static void finishPass() {
+        var members = ControlLoop.members;
+        var active = ControlLoop.active;
+        var start = System.nanoTime();
+        passPending = false;
+
+        for (int i = 0; i < members.length; i++) {
+            if (active[i] && stillActive(i, start)) members[i].calculate();
+        }
+        for (int i = 0; i < members.length; i++) {
+            if (active[i] && stillActive(i, start)) members[i].output();
+        }
+
+        // Time spent by triggers and commands in between the phases does not count towards the budget.
+        lastPassNanos = senseNanos + System.nanoTime() - start;
+        if (lastPassNanos > budgetNanos) {
+            degradedCyclesLeft = DEGRADED_CYCLES;
+        } else if (degradedCyclesLeft > 0) {
+            degradedCyclesLeft--;
+        }
+    }
+
+    /**
+     * Skips a member below {@link Priority#CRITICAL} for the rest of the pass, if the budget ran out since its last phase.
+     */
+    private static boolean stillActive(int index, long finishStart) {
+        var priority = priorities[index];
+        if (priority == Priority.CRITICAL) return true;
+        if (senseNanos + System.nanoTime() - finishStart <= budgetNanos) return true;
+
+        active[index] = false;
+        skippedUpdates[priority.ordinal()]++;
+        members[index].onSkipped();
+        return false;
+    }
+
+    private static boolean shouldUpdate(int index, Priority priority, long passStart) {
+        if (priority == Priority.CRITICAL) return true;
+
+        // Out of time for this pass.
+        if (System.nanoTime() - passStart > budgetNanos) return false;
+
+        // Still recovering from an overrun. Members are staggered, so that they do not all update on the same cycle.
+        if (degradedCyclesLeft > 0 && (cycle + index) % priority.getDecimation() != 0) return false;
+
+        return true;
+    }
+
+    private static class LoopRunner implements Subsystem {
+        @Override
+        public void periodic() {
+            if (finishedByRobot) {
+                startPass();
+            } else {
+                run();
+            }
+        }
+    }
+}
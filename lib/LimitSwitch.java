@@ -1,41 +1,173 @@
 package frc.robot.modules;
 
+import java.util.Arrays;
 import java.util.function.BooleanSupplier;
 
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 
 public class LimitSwitch {
 
+    /**
+     * Notified when a limit switch is pressed or released.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        public void onChange(boolean pressed);
+    }
+
     BooleanSupplier lsInput;
     Trigger trigger;
 
     boolean inverted;
     boolean resetsEncoders;
 
+    private volatile Listener[] listeners = new Listener[0];
+
+    // Only used by polled limit switches.
+    private LimitSwitchBank bank;
+    private int bankIndex = -1;
+
+    // Only used by interrupt-backed limit switches.
+    private AsynchronousInterrupt interrupt;
+    private double debounceSeconds;
+    private volatile boolean interruptPressed;
+    private volatile double lastEdgeTimestamp = Double.NEGATIVE_INFINITY;
+
     /**
-     * Creates a new limit switch object.
+     * Creates a new limit switch object. The limit switch is polled once per cycle by the default {@link LimitSwitchBank}.
      * @param limitSwitch A lambda returning the limit switch's output.
      * @param inverted Does {@code limitSwitch} return false when the limit switch is pressed?
      * @param resetsEncoders Does this limit switch zero/reset encoders when it is pressed?
      */
     public LimitSwitch(BooleanSupplier limitSwitch, boolean inverted, boolean resetsEncoders) {
+        this(limitSwitch, inverted, resetsEncoders, LimitSwitchBank.getDefault());
+    }
+
+    private LimitSwitch(BooleanSupplier limitSwitch, boolean inverted, boolean resetsEncoders, LimitSwitchBank bank) {
         this.lsInput = limitSwitch;
         this.inverted = inverted;
         this.resetsEncoders = resetsEncoders;
+
+        if (bank != null) {
+            this.bank = bank;
+            this.bankIndex = bank.register(this);
+        }
     }
 
+    /**
+     * Creates a new limit switch object which reacts to presses and releases as soon as they happen, using DIO interrupts,
+     * instead of waiting to be polled. Listeners added with {@link #addListener(Listener)} are called from the
+     * interrupt thread.
+     * @param input The DIO the limit switch is wired to.
+     * @param inverted Does {@code input} return false when the limit switch is pressed?
+     * @param resetsEncoders Does this limit switch zero/reset encoders when it is pressed?
+     * @param debounceSeconds How long the limit switch ignores further edges after it is pressed or released.
+     */
+    public static LimitSwitch fromInterrupt(DigitalInput input, boolean inverted, boolean resetsEncoders, double debounceSeconds) {
+        var limitSwitch = new LimitSwitch(input::get, inverted, resetsEncoders, null);
+
+        limitSwitch.debounceSeconds = debounceSeconds;
+        limitSwitch.interruptPressed = limitSwitch.readInput();
+
+        limitSwitch.interrupt = new AsynchronousInterrupt(input, (rising, falling) -> limitSwitch.onInterrupt());
+        limitSwitch.interrupt.setInterruptEdges(true, true);
+        limitSwitch.interrupt.enable();
+
+        return limitSwitch;
+    }
+
+    /**
+     * Is this limit switch pressed? Polled limit switches return their state as of the last time their
+     * {@link LimitSwitchBank} was polled, rather than reading the input again, and read as released until it is first polled.
+     */
     public boolean isPressed() {
-        return lsInput.getAsBoolean() ^ inverted;
+        if (interrupt != null) {
+            // An edge ignored by the debounce can leave the state stale, so resynchronize once the input has settled.
+            if (Timer.getFPGATimestamp() - lastEdgeTimestamp >= debounceSeconds) {
+                updateInterruptState(readInput(), Timer.getFPGATimestamp());
+            }
+            return interruptPressed;
+        }
+        return bank.isPressed(bankIndex);
+    }
+
+    /**
+     * Reads whether this limit switch is pressed right now, rather than as of the last time its {@link LimitSwitchBank}
+     * was polled. Meant for code that runs more often than the bank is polled, such as control loops on their own thread,
+     * or that runs between polls, such as interrupt listeners. May be called from any thread.
+     */
+    public boolean readPressed() {
+        if (interrupt != null) {
+            return isPressed();
+        }
+        return readInput();
     }
 
     public boolean doesResetEncoders() {
         return resetsEncoders;
     }
 
+    /**
+     * Is this limit switch backed by DIO interrupts?
+     */
+    public boolean isInterruptDriven() {
+        return interrupt != null;
+    }
+
+    /**
+     * Gets the time of the last accepted press or release of an interrupt-backed limit switch.
+     * @return The FPGA timestamp of the last edge, in seconds.
+     */
+    public double getLastEdgeTimestamp() {
+        return lastEdgeTimestamp;
+    }
+
+    /**
+     * Adds a listener which is called whenever this limit switch is pressed or released. Polled limit switches call their
+     * listeners from the main robot thread when their {@link LimitSwitchBank} is polled. Interrupt-backed limit switches
+     * call them from the interrupt thread as soon as the edge happens, so those listeners must be quick and thread safe.
+     */
+    public synchronized void addListener(Listener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
     public Trigger asTrigger() {
         if (trigger == null) {
-            trigger = new Trigger(lsInput);
+            trigger = new Trigger(this::isPressed);
         }
         return trigger;
     }
+
+    boolean readInput() {
+        return lsInput.getAsBoolean() ^ inverted;
+    }
+
+    void notifyListeners(boolean pressed) {
+        for (var listener : listeners) {
+            listener.onChange(pressed);
+        }
+    }
+
+    private void onInterrupt() {
+        var timestamp = Math.max(interrupt.getRisingTimestamp(), interrupt.getFallingTimestamp());
+        if (timestamp - lastEdgeTimestamp < debounceSeconds) return;
+
+        updateInterruptState(readInput(), timestamp);
+    }
+
+    private void updateInterruptState(boolean pressed, double timestamp) {
+        // Listeners are called outside of the lock, so that they are free to take locks of their own.
+        synchronized (this) {
+            if (pressed == interruptPressed) return;
+
+            interruptPressed = pressed;
+            lastEdgeTimestamp = timestamp;
+        }
+
+        notifyListeners(pressed);
+    }
 }
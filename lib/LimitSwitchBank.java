@@ -0,0 +1,118 @@
+package frc.robot.modules;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Polls a set of {@link LimitSwitch}es in a single pass, once per cycle, packing their states into a bitset.
+ * Presses and releases are found by comparing each 64-switch word with the previous cycle's, and only the switches
+ * that changed notify their listeners. Polled limit switches register themselves with the default bank, which is
+ * polled by the {@link ControlLoop} before any of its members read their sensors.
+ * Should only be polled and registered with from the main robot thread.
+ */
+public final class LimitSwitchBank {
+
+    private static LimitSwitchBank defaultBank;
+
+    private LimitSwitch[] switches = new LimitSwitch[0];
+
+    // The state as of the last poll, which only the polling thread touches...
+    private long[] lastPolled = new long[0];
+    // ...the switches which have not been polled yet...
+    private long[] unpolled = new long[0];
+    // ...and its published copy, which may be read from any thread.
+    private volatile AtomicLongArray pressed = new AtomicLongArray(0);
+
+    /**
+     * Gets the bank that polled limit switches register with, which is polled every cycle by the {@link ControlLoop}.
+     */
+    public static LimitSwitchBank getDefault() {
+        if (defaultBank == null) {
+            var bank = new LimitSwitchBank();
+            ControlLoop.registerFirst(new ControlLoop.Member() {
+                @Override
+                public void sense() {
+                    bank.poll();
+                }
+            });
+            defaultBank = bank;
+        }
+        return defaultBank;
+    }
+
+    /**
+     * Adds a limit switch to this bank.
+     * @return The index of the limit switch's bit.
+     */
+    int register(LimitSwitch limitSwitch) {
+        var index = switches.length;
+        switches = Arrays.copyOf(switches, index + 1);
+        switches[index] = limitSwitch;
+
+        var words = (switches.length + 63) >>> 6;
+        if (words != lastPolled.length) {
+            lastPolled = Arrays.copyOf(lastPolled, words);
+            unpolled = Arrays.copyOf(unpolled, words);
+            var newPressed = new AtomicLongArray(words);
+            for (int word = 0; word < lastPolled.length; word++) {
+                newPressed.set(word, lastPolled[word]);
+            }
+            pressed = newPressed;
+        }
+
+        // The input is not read until the next poll, as the switch may be registered before its input is ready to be read.
+        unpolled[index >>> 6] |= 1L << (index & 63);
+        return index;
+    }
+
+    /**
+     * Reads every limit switch in this bank, and notifies the listeners of the ones that were pressed or released
+     * since the last poll. Called automatically every cycle for the default bank.
+     */
+    public void poll() {
+        var switches = this.switches;
+
+        for (int word = 0; word < lastPolled.length; word++) {
+            var base = word << 6;
+            var end = Math.min(base + 64, switches.length);
+
+            var bits = 0L;
+            for (int i = base; i < end; i++) {
+                if (switches[i].readInput()) {
+                    bits |= 1L << (i - base);
+                }
+            }
+
+            var changed = bits ^ lastPolled[word];
+            var firstPolled = unpolled[word];
+            if (changed == 0 && firstPolled == 0) continue;
+
+            lastPolled[word] = bits;
+            unpolled[word] = 0;
+            pressed.set(word, bits);
+
+            // Switches polled for the first time start from their current state, so one that is already pressed is not an edge.
+            changed &= ~firstPolled;
+            var rising = changed & bits;
+            while (changed != 0) {
+                var bit = Long.numberOfTrailingZeros(changed);
+                switches[base + bit].notifyListeners(((rising >>> bit) & 1) != 0);
+                changed &= changed - 1;
+            }
+        }
+    }
+
+    /**
+     * Was the limit switch with this index pressed as of the last poll?
+     */
+    boolean isPressed(int index) {
+        return ((pressed.get(index >>> 6) >>> (index & 63)) & 1) != 0;
+    }
+
+    /**
+     * Gets the number of limit switches in this bank.
+     */
+    public int size() {
+        return switches.length;
+    }
+}
@@ -0,0 +1,55 @@
+package frc.robot.modules;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Caches a sensor reading for the rest of the current {@link ControlCycle}, so that a sensor is read at most once
+ * per cycle no matter how many times its value is requested. Should only be used from the main robot thread.
+ */
+public class SensorSnapshot implements DoubleSupplier {
+
+    private final DoubleSupplier sensor;
+
+    private long cycle = -1;
+    private double value;
+
+    private long reads = 0;
+
+    /**
+     * Creates a new sensor snapshot.
+     * @param sensor A lambda that reads the sensor.
+     */
+    public SensorSnapshot(DoubleSupplier sensor) {
+        this.sensor = sensor;
+        // Snapshots are created while the robot is initialized, which is a safe time to register the loop that advances the cycle.
+        ControlLoop.install();
+    }
+
+    /**
+     * Gets the value of the sensor, reading it if it has not been read yet this cycle.
+     */
+    @Override
+    public double getAsDouble() {
+        var currentCycle = ControlCycle.getCycle();
+        if (cycle != currentCycle) {
+            value = sensor.getAsDouble();
+            cycle = currentCycle;
+            reads++;
+        }
+        return value;
+    }
+
+    /**
+     * Forces the sensor to be read again the next time its value is requested, such as after the sensor is reset.
+     */
+    public void invalidate() {
+        cycle = -1;
+    }
+
+    /**
+     * Gets the number of times the sensor has actually been read.
+     */
+    public long getReads() {
+        return reads;
+    }
+}
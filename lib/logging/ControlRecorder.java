@@ -0,0 +1,96 @@
+package frc.robot.modules.logging;
+
+import java.util.Arrays;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.wpilibj.DataLogManager;
+
+/**
+ * Records the setpoint, position and output of control loops every cycle, without allocating on the control thread.
+ * Each controller records into its own preallocated {@link RecorderChannel}, and a background thread periodically
+ * drains every channel into a WPILib {@link DataLog}.
+ */
+public final class ControlRecorder {
+
+    private static ControlRecorder defaultRecorder;
+
+    private final DataLog log;
+    private final long flushPeriodMillis;
+
+    private volatile RecorderChannel[] channels = new RecorderChannel[0];
+    // Held while draining, since each channel must only be drained by one thread at a time.
+    private final Object drainLock = new Object();
+
+    /**
+     * Creates a new recorder, with its own background thread.
+     * @param log The log to drain samples into.
+     * @param flushPeriodSeconds How often samples are drained into the log.
+     */
+    public ControlRecorder(DataLog log, double flushPeriodSeconds) {
+        this.log = log;
+        this.flushPeriodMillis = (long)(flushPeriodSeconds * 1000);
+
+        var thread = new Thread(this::run, "ControlRecorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the recorder shared by all controllers, which drains into the {@link DataLogManager}'s log every 100 ms.
+     */
+    public static synchronized ControlRecorder getDefault() {
+        if (defaultRecorder == null) {
+            defaultRecorder = new ControlRecorder(DataLogManager.getLog(), 0.1);
+        }
+        return defaultRecorder;
+    }
+
+    /**
+     * Creates a channel for a controller to record into. Its buffer is allocated right away, and never grows.
+     * The channel should hold at least as many samples as the controller records in one flush period.
+     * @param name The name of the controller, which prefixes its log entries.
+     * @param capacity The number of samples the channel can hold, rounded up to a power of two.
+     */
+    public synchronized RecorderChannel createChannel(String name, int capacity) {
+        var channel = new RecorderChannel(name, capacity);
+        var newChannels = Arrays.copyOf(channels, channels.length + 1);
+        newChannels[newChannels.length - 1] = channel;
+        channels = newChannels;
+        return channel;
+    }
+
+    /**
+     * Gets the total number of samples dropped by every channel of this recorder.
+     */
+    public long getDroppedSamples() {
+        var dropped = 0L;
+        for (var channel : channels) {
+            dropped += channel.getDroppedSamples();
+        }
+        return dropped;
+    }
+
+    /**
+     * Drains every channel into the log right away, rather than waiting for the background thread, such as before the
+     * log is closed.
+     */
+    public void flush() {
+        synchronized (drainLock) {
+            for (var channel : channels) {
+                channel.drainTo(log);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(flushPeriodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            flush();
+        }
+    }
+}
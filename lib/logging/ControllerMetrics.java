@@ -0,0 +1,114 @@
+package frc.robot.modules.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.modules.ControlLoop;
+
+/**
+ * The {@link LoopTimer}s of one controller. Once the controller is given a name, usually by the subsystem that owns it,
+ * its timers are published to NetworkTables under {@code /Metrics/<name>/<timer>} once every
+ * {@link #PUBLISH_PERIOD} seconds, by the {@link ControlLoop}.
+ */
+public final class ControllerMetrics {
+
+    /**
+     * How often metrics are published to NetworkTables, in seconds.
+     */
+    public static final double PUBLISH_PERIOD = 1;
+
+    private static final String[] STATISTICS = {"minMicros", "meanMicros", "p99Micros", "maxMicros", "calls"};
+
+    private static final List<ControllerMetrics> published = new ArrayList<>();
+    private static boolean publishing = false;
+    private static double nextPublishTime = 0;
+    private static final double[] snapshot = new double[STATISTICS.length];
+
+    private String name;
+    private LoopTimer[] timers = new LoopTimer[0];
+    private DoublePublisher[][] publishers;
+
+    /**
+     * Creates a timer belonging to this controller.
+     * @param key The name of the timer, such as the name of the method it measures.
+     */
+    public LoopTimer createTimer(String key) {
+        var timer = new LoopTimer(key);
+        timers = Arrays.copyOf(timers, timers.length + 1);
+        timers[timers.length - 1] = timer;
+
+        if (name != null) {
+            createPublishers();
+        }
+        return timer;
+    }
+
+    /**
+     * Names the controller, and starts publishing its metrics under that name. Should only be called from the main robot thread.
+     * @param name The name of the controller, usually the name of the subsystem that owns it.
+     */
+    public void setName(String name) {
+        this.name = name;
+        createPublishers();
+
+        if (!published.contains(this)) {
+            published.add(this);
+        }
+
+        if (!publishing) {
+            publishing = true;
+            ControlLoop.register(new ControlLoop.Member() {
+                @Override
+                public void output() {
+                    publishAll();
+                }
+            });
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void createPublishers() {
+        if (publishers != null) {
+            for (var timerPublishers : publishers) {
+                for (var publisher : timerPublishers) {
+                    publisher.close();
+                }
+            }
+        }
+
+        var table = NetworkTableInstance.getDefault().getTable("Metrics").getSubTable(name);
+        publishers = new DoublePublisher[timers.length][STATISTICS.length];
+
+        for (int i = 0; i < timers.length; i++) {
+            var timerTable = table.getSubTable(timers[i].getKey());
+            for (int j = 0; j < STATISTICS.length; j++) {
+                publishers[i][j] = timerTable.getDoubleTopic(STATISTICS[j]).publish();
+            }
+        }
+    }
+
+    private static void publishAll() {
+        if (!LoopTimer.isEnabled()) return;
+
+        var now = Timer.getFPGATimestamp();
+        if (now < nextPublishTime) return;
+        nextPublishTime = now + PUBLISH_PERIOD;
+
+        for (int i = 0; i < published.size(); i++) {
+            var metrics = published.get(i);
+            for (int j = 0; j < metrics.timers.length; j++) {
+                metrics.timers[j].snapshot(snapshot);
+                for (int k = 0; k < snapshot.length; k++) {
+                    metrics.publishers[j][k].set(snapshot[k]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package frc.robot.modules.logging;
+
+import java.util.Arrays;
+
+/**
+ * Measures how long one piece of per-cycle code takes, keeping the minimum, mean, 99th percentile and maximum
+ * execution time since the last {@link #snapshot()}, along with the total number of calls.
+ * Times are kept in a fixed-size log-linear histogram, with 8 buckets per power of two, so recording never allocates
+ * and percentiles are accurate to within 12.5%.
+ * <p>
+ * Every timer can be turned off at once with {@link #setEnabled(boolean)}, after which timing costs a single branch.
+ */
+public final class LoopTimer {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Set from whichever thread configures logging, and read by every loop thread.
+    private static volatile boolean enabled = true;
+
+    private final String key;
+
+    private final long[] buckets = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    private long windowCalls = 0;
+    private long windowNanos = 0;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos = 0;
+    private long totalCalls = 0;
+
+    LoopTimer(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Turns every loop timer on or off. Should be called once at startup.
+     */
+    public static void setEnabled(boolean enabled) {
+        LoopTimer.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the current time, to pass to {@link #stop(long)} later.
+     * @return The current time in nanoseconds, or 0 if timing is turned off.
+     */
+    public static long start() {
+        return (enabled) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since {@code startNanos}.
+     * @param startNanos The time returned by {@link #start()}.
+     */
+    public void stop(long startNanos) {
+        if (!enabled || startNanos == 0) return;
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records one call which took this long.
+     */
+    public synchronized void record(long nanos) {
+        if (!enabled) return;
+
+        buckets[bucketOf(Math.max(nanos, 0))]++;
+        windowCalls++;
+        windowNanos += nanos;
+        minNanos = Math.min(minNanos, nanos);
+        maxNanos = Math.max(maxNanos, nanos);
+        totalCalls++;
+    }
+
+    /**
+     * Gets the name of this timer within its {@link ControllerMetrics}.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Copies the statistics since the last snapshot into {@code out}, then starts a new window.
+     * @param out Receives the minimum, mean, 99th percentile and maximum time in microseconds, then the total call count.
+     * Times are NaN if there were no calls in the window.
+     */
+    synchronized void snapshot(double[] out) {
+        if (windowCalls == 0) {
+            Arrays.fill(out, 0, 4, Double.NaN);
+        } else {
+            out[0] = minNanos / 1000.0;
+            out[1] = (double)windowNanos / windowCalls / 1000.0;
+            out[2] = percentile(0.99) / 1000.0;
+            out[3] = maxNanos / 1000.0;
+        }
+        out[4] = totalCalls;
+
+        Arrays.fill(buckets, 0);
+        windowCalls = 0;
+        windowNanos = 0;
+        minNanos = Long.MAX_VALUE;
+        maxNanos = 0;
+    }
+
+    private long percentile(double fraction) {
+        var target = (long)Math.ceil(windowCalls * fraction);
+        var seen = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                // Report the top of the bucket, but never more than the largest time actually seen.
+                return Math.min(bucketUpperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int)nanos;
+
+        var exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        var subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        var exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var subBucket = bucket % SUB_BUCKETS;
+        return ((long)(SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
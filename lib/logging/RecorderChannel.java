@@ -0,0 +1,149 @@
+package frc.robot.modules.logging;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+
+/**
+ * A preallocated ring buffer of control loop samples for a single controller. One thread (the control loop) writes
+ * samples with {@link #record(long, double, double, double)} while the {@link ControlRecorder}'s thread drains them,
+ * without locking and without allocating. When the buffer is full, new samples are dropped and counted.
+ */
+public final class RecorderChannel {
+
+    private final String name;
+
+    private final int mask;
+    private final long[] timestamps;
+    private final double[] setpoints;
+    private final double[] positions;
+    private final double[] outputs;
+    private final int[] flags;
+
+    // Set by the first sample recorded with flags, after which every sample's flags are logged. It is set before the
+    // sample is published, and read after head, so the draining thread sees it along with that sample.
+    private volatile boolean recordsFlags = false;
+
+    // The next sample to write and the next sample to drain. head is only written by the recording thread,
+    // tail only by the draining thread, and each one's volatile write publishes the samples before it.
+    private volatile long head = 0;
+    private volatile long tail = 0;
+
+    private volatile long droppedSamples = 0;
+
+    private DoubleLogEntry setpointEntry;
+    private DoubleLogEntry positionEntry;
+    private DoubleLogEntry outputEntry;
+    private IntegerLogEntry flagsEntry;
+
+    RecorderChannel(String name, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A recorder channel must hold at least one sample!");
+        }
+        // Round up to a power of two, so that the index can be masked instead of divided.
+        var size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+
+        this.name = name;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.setpoints = new double[size];
+        this.positions = new double[size];
+        this.outputs = new double[size];
+        this.flags = new int[size];
+    }
+
+    /**
+     * Records one sample. Must only be called from one thread.
+     * @param timestampMicros The FPGA timestamp of the sample, in microseconds.
+     */
+    public void record(long timestampMicros, double setpoint, double position, double output) {
+        write(timestampMicros, setpoint, position, output, 0);
+    }
+
+    /**
+     * Records one sample, along with bit flags describing the state of the controller, which are logged under
+     * {@code <name>/flags}. Must only be called from one thread.
+     * @param timestampMicros The FPGA timestamp of the sample, in microseconds.
+     */
+    public void record(long timestampMicros, double setpoint, double position, double output, int flags) {
+        if (!recordsFlags) recordsFlags = true;
+        write(timestampMicros, setpoint, position, output, flags);
+    }
+
+    private void write(long timestampMicros, double setpoint, double position, double output, int flags) {
+        var head = this.head;
+        if (head - tail > mask) {
+            droppedSamples++;
+            return;
+        }
+
+        var index = (int)(head & mask);
+        timestamps[index] = timestampMicros;
+        setpoints[index] = setpoint;
+        positions[index] = position;
+        outputs[index] = output;
+        this.flags[index] = flags;
+
+        this.head = head + 1;
+    }
+
+    /**
+     * Gets the name of the controller this channel records.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of samples this channel can hold before dropping new ones.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the number of samples that were dropped because the buffer was full.
+     */
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    /**
+     * Gets the number of samples that were recorded, including the ones not drained yet.
+     */
+    public long getRecordedSamples() {
+        return head;
+    }
+
+    /**
+     * Writes every sample recorded so far to a log. Must only be called by one thread at a time.
+     * @return The number of samples written.
+     */
+    int drainTo(DataLog log) {
+        var head = this.head;
+        var tail = this.tail;
+
+        if (setpointEntry == null) {
+            setpointEntry = new DoubleLogEntry(log, name + "/setpoint");
+            positionEntry = new DoubleLogEntry(log, name + "/position");
+            outputEntry = new DoubleLogEntry(log, name + "/output");
+        }
+        if (flagsEntry == null && recordsFlags) {
+            flagsEntry = new IntegerLogEntry(log, name + "/flags");
+        }
+
+        for (var sample = tail; sample < head; sample++) {
+            var index = (int)(sample & mask);
+            setpointEntry.append(setpoints[index], timestamps[index]);
+            positionEntry.append(positions[index], timestamps[index]);
+            outputEntry.append(outputs[index], timestamps[index]);
+            if (flagsEntry != null) {
+                flagsEntry.append(flags[index], timestamps[index]);
+            }
+        }
+
+        this.tail = head;
+        return (int)(head - tail);
+    }
+}
@@ -0,0 +1,148 @@
+package frc.robot.modules.motors;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.Set;
+
+import com.revrobotics.REVLibError;
+import com.revrobotics.spark.SparkBase.ResetMode;
+import com.revrobotics.spark.config.SparkBaseConfig;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Remembers a fingerprint of the last configuration persisted to each device, by CAN ID, so that an unchanged
+ * configuration does not have to be sent (and written to flash) again on every boot. The record is kept in a file,
+ * so that it survives reboots.
+ * <p>
+ * A fingerprint only describes a device's settings until something else is configured, such as a follower setting which is
+ * not persisted, so only the first configuration of each device after this record is created can be skipped.
+ * <p>
+ * The record cannot tell when a device is swapped for another one with the same CAN ID. After swapping a device,
+ * call {@link #forget(int)} or {@link #forceResync()} so that its configuration is sent again.
+ */
+public final class ConfigFingerprints {
+
+    private static ConfigFingerprints defaultRecord;
+
+    private final File file;
+    private final Properties fingerprints = new Properties();
+    // Devices which were configured since this record was created, and may no longer hold the settings they loaded from flash.
+    private final Set<Integer> configured = new HashSet<>();
+
+    /**
+     * Creates a fingerprint record backed by a file, loading it if it exists.
+     * @param file The file to store the fingerprints in.
+     */
+    public ConfigFingerprints(File file) {
+        this.file = file;
+
+        if (file.exists()) {
+            try (var reader = new FileReader(file, StandardCharsets.UTF_8)) {
+                fingerprints.load(reader);
+            } catch (IOException e) {
+                DriverStation.reportWarning("Could not read configuration fingerprints, all configurations will be sent.", false);
+                fingerprints.clear();
+            }
+        }
+    }
+
+    /**
+     * Gets the record shared by all motor controllers, which is stored in the robot's operating directory.
+     */
+    public static synchronized ConfigFingerprints getDefault() {
+        if (defaultRecord == null) {
+            defaultRecord = new ConfigFingerprints(new File(Filesystem.getOperatingDirectory(), "config-fingerprints.properties"));
+        }
+        return defaultRecord;
+    }
+
+    /**
+     * Computes the fingerprint of a configuration.
+     */
+    public static String fingerprint(SparkBaseConfig config, ResetMode resetMode) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(resetMode.name().getBytes(StandardCharsets.UTF_8));
+            digest.update(config.flatten().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Was this fingerprint the last one persisted to the device?
+     */
+    public synchronized boolean matches(int canId, String fingerprint) {
+        return fingerprint.equals(fingerprints.getProperty(Integer.toString(canId)));
+    }
+
+    /**
+     * Decides whether a configuration must be sent to a device, and notes that the device is being configured. A persisted
+     * configuration is skipped if it matches the last one persisted to the device, but only for the device's first
+     * configuration, while its settings are still the ones it loaded from flash.
+     * @param fingerprint The fingerprint of the configuration, or null if it is not persisted.
+     */
+    public synchronized boolean mustSend(int canId, String fingerprint) {
+        var first = configured.add(canId);
+        return fingerprint == null || !first || !matches(canId, fingerprint);
+    }
+
+    /**
+     * Records the result of sending a configuration to a device. A persisted configuration is recorded if it was
+     * applied, and the device is forgotten if it failed, since it may have been left with a partial configuration.
+     * @param fingerprint The fingerprint of the configuration, or null if it is not persisted.
+     */
+    public synchronized void onConfigured(int canId, String fingerprint, REVLibError status) {
+        if (fingerprint == null) return;
+
+        if (status == REVLibError.kOk) {
+            record(canId, fingerprint);
+        } else {
+            forget(canId);
+        }
+    }
+
+    /**
+     * Records that a configuration has been persisted to a device.
+     */
+    public synchronized void record(int canId, String fingerprint) {
+        if (fingerprint.equals(fingerprints.setProperty(Integer.toString(canId), fingerprint))) return;
+        save();
+    }
+
+    /**
+     * Forgets the configuration of a device, so that it is sent again the next time.
+     */
+    public synchronized void forget(int canId) {
+        if (fingerprints.remove(Integer.toString(canId)) == null) return;
+        save();
+    }
+
+    /**
+     * Forgets the configuration of every device, so that every configuration is sent again.
+     */
+    public synchronized void forceResync() {
+        fingerprints.clear();
+        save();
+    }
+
+    private void save() {
+        try (var writer = new FileWriter(file, StandardCharsets.UTF_8)) {
+            fingerprints.store(writer, "Fingerprints of the configurations persisted to each device, by CAN ID");
+        } catch (IOException e) {
+            DriverStation.reportWarning("Could not save configuration fingerprints.", false);
+        }
+    }
+}
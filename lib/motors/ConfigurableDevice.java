@@ -0,0 +1,20 @@
+package frc.robot.modules.motors;
+
+import com.revrobotics.REVLibError;
+import com.revrobotics.spark.SparkBase.PersistMode;
+import com.revrobotics.spark.SparkBase.ResetMode;
+import com.revrobotics.spark.config.SparkBaseConfig;
+
+/**
+ * A device which can be sent a REV configuration, such as {@code SparkMax::configure}.
+ * Exists so that the {@link ConfigurationQueue} can be exercised with stand-in devices.
+ */
+@FunctionalInterface
+public interface ConfigurableDevice {
+
+    /**
+     * Sends a configuration to the device, blocking until it is acknowledged.
+     * @return {@link REVLibError#kOk} if the configuration was applied, or the error otherwise.
+     */
+    public REVLibError configure(SparkBaseConfig config, ResetMode resetMode, PersistMode persistMode);
+}
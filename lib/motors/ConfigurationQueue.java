@@ -0,0 +1,117 @@
+package frc.robot.modules.motors;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.revrobotics.REVLibError;
+import com.revrobotics.spark.SparkBase.PersistMode;
+import com.revrobotics.spark.SparkBase.ResetMode;
+import com.revrobotics.spark.config.SparkBaseConfig;
+
+/**
+ * Applies device configurations on a background thread, so that the robot thread never blocks on CAN round trips.
+ * Configurations are applied in the order they were submitted, and retried when the device reports an error.
+ */
+public final class ConfigurationQueue {
+
+    private static ConfigurationQueue defaultQueue;
+
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+
+    private record Request(
+        ConfigurableDevice device,
+        SparkBaseConfig config,
+        ResetMode resetMode,
+        PersistMode persistMode,
+        CompletableFuture<REVLibError> result) {}
+
+    /**
+     * Creates a new configuration queue, with its own background thread.
+     * @param maxAttempts The number of times a configuration is sent before giving up on it.
+     * @param retryDelaySeconds How long to wait after a failed attempt before trying again.
+     */
+    public ConfigurationQueue(int maxAttempts, double retryDelaySeconds) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("A configuration must be attempted at least once!");
+        }
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = (long)(retryDelaySeconds * 1000);
+
+        var thread = new Thread(this::run, "ConfigurationQueue");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the queue shared by all motor controllers, which attempts each configuration 3 times.
+     */
+    public static synchronized ConfigurationQueue getDefault() {
+        if (defaultQueue == null) {
+            defaultQueue = new ConfigurationQueue(3, 0.05);
+        }
+        return defaultQueue;
+    }
+
+    /**
+     * Queues a configuration to be sent to a device. Never blocks.
+     * @return A future which completes with {@link REVLibError#kOk} once the configuration is applied,
+     * or with the last error once every attempt has failed.
+     */
+    public CompletableFuture<REVLibError> submit(ConfigurableDevice device, SparkBaseConfig config, ResetMode resetMode, PersistMode persistMode) {
+        var result = new CompletableFuture<REVLibError>();
+        requests.add(new Request(device, config, resetMode, persistMode, result));
+        return result;
+    }
+
+    /**
+     * Gets the number of configurations waiting to be applied, not counting the one being applied right now.
+     */
+    public int getPendingCount() {
+        return requests.size();
+    }
+
+    private void run() {
+        var batch = new ArrayList<Request>();
+
+        while (true) {
+            try {
+                // Wait for one request, then take everything else that piled up alongside it.
+                batch.add(requests.take());
+                requests.drainTo(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            for (var request : batch) {
+                apply(request);
+            }
+            batch.clear();
+        }
+    }
+
+    private void apply(Request request) {
+        var status = REVLibError.kOk;
+
+        try {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                status = request.device().configure(request.config(), request.resetMode(), request.persistMode());
+                if (status == REVLibError.kOk) break;
+
+                if (attempt < maxAttempts) {
+                    Thread.sleep(retryDelayMillis * attempt);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            request.result().completeExceptionally(e);
+            return;
+        }
+        request.result().complete(status);
+    }
+}
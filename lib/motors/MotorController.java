@@ -1,26 +1,48 @@
 package frc.robot.modules.motors;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BooleanSupplier;
 
-import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.logging.ControllerMetrics;
+import frc.robot.modules.logging.LoopTimer;
 
 /**
  * A abstracted approach to motor controllers. Supports limit switches and following other motor controllers.
  */
 public abstract class MotorController {
 
-    Trigger positiveLSTrig;
-    Trigger negativeLSTrig;
+    private LimitSwitch positiveLS;
+    private LimitSwitch negativeLS;
 
-    private double motorUpperLimit = 1;
-    private double motorLowerLimit = -1;
+    // Guards writing the output, so that interrupt-backed limit switches cannot race with setSpeed().
+    private final Object outputLock = new Object();
+    private double lastSpeed = 0;
+
+    private OutputPipeline outputPipeline;
+
+    // Only used when this controller's output goes through a PowerBudget, which writes it once per cycle.
+    private PowerBudget powerBudget;
+    private double requestedSpeed = 0;
+    private boolean budgetDisallowed = false;
 
     private boolean following = false;
     private boolean followingInverted = false;
 
-    private List<MotorController> followers;
+    private MotorController leader;
+    private List<MotorController> followers = new ArrayList<>();
+
+    // Every direct and indirect follower of this controller, in the order in which they must be updated,
+    // and the sign to apply to this controller's speed to get the speed of each one's leader.
+    private MotorController[] followerPlan = new MotorController[0];
+    private double[] followerPlanSigns = new double[0];
+
+    private final ControllerMetrics metrics = new ControllerMetrics();
+    private final LoopTimer setSpeedTimer = metrics.createTimer("setSpeed");
+    private final LoopTimer limitSwitchTimer = metrics.createTimer("limitSwitches");
 
     /**
      * Set the limit switches of this motor controller. Note that if this controller already has its limit switches set,
@@ -32,18 +54,9 @@ public abstract class MotorController {
      * @return This motor controller for method chaining.
      */
     public final MotorController withLimitSwitches(BooleanSupplier positiveLS, BooleanSupplier negativeLS) {
-        Trigger posTrig = null;
-        Trigger negTrig = null;
-
-        if (positiveLS != null) {
-            posTrig = new Trigger(positiveLS);
-        }
-
-        if (negativeLS != null) {
-            negTrig = new Trigger(negativeLS);
-        }
-
-        withLimitSwitches(posTrig, negTrig);
+        withLimitSwitches(
+            (positiveLS != null) ? new LimitSwitch(positiveLS, false, false) : null,
+            (negativeLS != null) ? new LimitSwitch(negativeLS, false, false) : null);
         return this;
     }
 
@@ -57,24 +70,53 @@ public abstract class MotorController {
      * @return This motor controller for method chaining.
      */
     public final MotorController withLimitSwitches(Trigger positiveLS, Trigger negativeLS) {
+        withLimitSwitches((BooleanSupplier)positiveLS, (BooleanSupplier)negativeLS);
+        return this;
+    }
 
-        // When an LS is pressed, change the allowed range of motor speeds
-        if (positiveLS != null && positiveLSTrig == null) {
-            this.positiveLSTrig = positiveLS;
-
-            positiveLS.onTrue(new InstantCommand( () -> { motorUpperLimit = 0; setSpeed(getSpeed()); } ));
-            positiveLS.onFalse(new InstantCommand( () -> { motorUpperLimit = 1; setSpeed(getSpeed()); } ));
+    /**
+     * Set the limit switches of this motor controller. Note that if this controller already has its limit switches set,
+     * this method will do nothing.
+     * <p>
+     * The limit switches are enforced as part of the output: a switch is only checked when the motor is driven towards it,
+     * and if it is pressed, the motor is stopped instead. The motor is also stopped as soon as a switch it is running into
+     * is pressed, even between calls to {@link #setSpeed(double)}.
+     * @param positiveLS The positive limit switch is the switch that is pressed when this motor controller is run in the positive direction.
+     * @param negativeLS The negative limit switch is the switch that is pressed when this motor controller is run in the negative direction.
+     * @return This motor controller for method chaining.
+     */
+    public final MotorController withLimitSwitches(LimitSwitch positiveLS, LimitSwitch negativeLS) {
+        if (positiveLS != null && this.positiveLS == null) {
+            this.positiveLS = positiveLS;
+            positiveLS.addListener((pressed) -> {
+                if (pressed) enforceLimitSwitches();
+            });
         }
 
-        if (negativeLS != null && positiveLSTrig == null) {
-            this.negativeLSTrig = negativeLS;
-
-            negativeLS.onTrue(new InstantCommand( () -> { motorLowerLimit = 0; setSpeed(getSpeed()); } ));
-            negativeLS.onFalse(new InstantCommand( () -> { motorLowerLimit = -1; setSpeed(getSpeed()); } ));
+        if (negativeLS != null && this.negativeLS == null) {
+            this.negativeLS = negativeLS;
+            negativeLS.addListener((pressed) -> {
+                if (pressed) enforceLimitSwitches();
+            });
         }
         return this;
     }
     
+    /**
+     * Shapes every speed given to this motor controller with a pipeline, before limit switches are enforced. Followers
+     * get the shaped speed of their leader, and their own pipeline is not applied while they follow.
+     * Hardware followers, such as a SparkMax following another SparkMax, are not affected either.
+     * @param pipeline A pipeline which is not used by any other motor controller.
+     * @return This motor controller for method chaining.
+     */
+    public final MotorController withOutputPipeline(OutputPipeline pipeline) {
+        pipeline.attach();
+        synchronized (outputLock) {
+            outputPipeline = pipeline;
+        }
+        return this;
+    }
+
     /**
      * Gets the current speed (from 1 to -1) of the controller.
      */
@@ -88,30 +130,199 @@ public abstract class MotorController {
 
     /**
      * Sets the speed of the controller and updates its followers, while taking into account limit switches.
+     * If this controller is in a {@link PowerBudget}, the speed is only written at the end of the {@link ControlLoop}'s
+     * output phase. When the robot calls {@link ControlLoop#finishCycle()}, that is after the commands have run, so speeds
+     * set by commands are written in the same cycle; otherwise they are written on the next one.
      * @param speed
      */
     public void setSpeed(double speed) {
         if (following) return;
         
-        var actualSpeed = Math.max(motorLowerLimit, Math.min(motorUpperLimit, speed));
-        setActualSpeed(actualSpeed);
-        updateSelfAndFollowers(actualSpeed);
+        var start = LoopTimer.start();
+        synchronized (outputLock) {
+            var actualSpeed = clampToLimitSwitches(shape(speed));
+            if (powerBudget != null) {
+                // Written by the budget at the end of the ControlLoop's output phase, after the commands when the robot finishes the cycle.
+                requestedSpeed = actualSpeed;
+            } else {
+                write(actualSpeed);
+            }
+        }
+        setSpeedTimer.stop(start);
+    }
+
+    private double shape(double speed) {
+        return (outputPipeline != null) ? outputPipeline.apply(speed) : speed;
+    }
+
+    /**
+     * Writes a speed to this controller and its followers, and feeds it back to the pipeline, since limit switches and
+     * power budgets may have changed the speed it shaped. Must be called with the output lock held.
+     */
+    private void write(double speed) {
+        lastSpeed = speed;
+        setActualSpeed(speed);
+        updateFollowers(speed);
+        if (outputPipeline != null) {
+            outputPipeline.setWrittenSpeed(speed);
+        }
+    }
+
+    /**
+     * Clamps a speed from -1 to 1, and to 0 if it would drive this controller into a pressed limit switch. Uses the state
+     * of the switches as of the last time their bank was polled, which is at the start of every cycle of the main loop.
+     * Control loops running faster than that check the switches themselves before setting a speed.
+     */
+    private double clampToLimitSwitches(double speed) {
+        return clampToLimitSwitches(speed, false);
+    }
+
+    /**
+     * Like {@link #clampToLimitSwitches(double)}, but can read the switches right away instead of using their polled state.
+     */
+    private double clampToLimitSwitches(double speed, boolean readNow) {
+        if (speed > 0 && isPressed(positiveLS, readNow)) return 0;
+        if (speed < 0 && isPressed(negativeLS, readNow)) return 0;
+        return Math.max(-1, Math.min(1, speed));
+    }
+
+    private static boolean isPressed(LimitSwitch limitSwitch, boolean readNow) {
+        if (limitSwitch == null) return false;
+        return readNow ? limitSwitch.readPressed() : limitSwitch.isPressed();
+    }
+
+    /**
+     * Stops this controller if it is being driven into a pressed limit switch. Uses the last speed given to
+     * {@link #setSpeed(double)}, rather than reading the speed back from the controller.
+     */
+    private void enforceLimitSwitches() {
+        if (following) return;
+
+        var start = LoopTimer.start();
+        synchronized (outputLock) {
+            // Called from the switches' listeners, which may run on an interrupt thread.
+            requestedSpeed = clampToLimitSwitches(requestedSpeed, true);
+            var clampedSpeed = clampToLimitSwitches(lastSpeed, true);
+            if (clampedSpeed != lastSpeed) {
+                write(clampedSpeed);
+            }
+        }
+        limitSwitchTimer.stop(start);
+    }
+
+    /**
+     * Gets the current this controller is drawing, if it can be measured. Override this method to let a {@link PowerBudget}
+     * base its estimates on measurements instead of assuming the motor is stalled.
+     * @return The current through the motor in amps, or {@code NaN} if it cannot be measured.
+     */
+    protected double getMeasuredCurrent() {
+        return Double.NaN;
+    }
+
+    /**
+     * Estimates the current this controller would draw from the battery at a speed, with a brushed DC motor model:
+     * from the last speed, motor current changes by the stall current times the change in speed, and battery current
+     * is motor current times speed. If the current cannot be measured, the motor is assumed to be stalled.
+     */
+    final double estimateCurrentDraw(double speed, double stallCurrentAmps) {
+        var measured = getMeasuredCurrent();
+        if (Double.isNaN(measured)) {
+            return stallCurrentAmps * speed * speed;
+        }
+        var motorCurrent = Math.copySign(measured, lastSpeed) + stallCurrentAmps * (speed - lastSpeed);
+        return Math.max(0, motorCurrent * speed);
+    }
+
+    final void setPowerBudget(PowerBudget powerBudget) {
+        if (following) {
+            throw new IllegalArgumentException("A following MotorController cannot be budgeted, budget its leader instead!");
+        }
+        if (budgetDisallowed) {
+            throw new IllegalArgumentException("This MotorController is driven faster than a power budget writes, so it cannot be budgeted!");
+        }
+        if (this.powerBudget != null) {
+            throw new IllegalStateException("This MotorController already has a power budget!");
+        }
+        synchronized (outputLock) {
+            this.powerBudget = powerBudget;
+            requestedSpeed = lastSpeed;
+        }
+    }
+
+    /**
+     * Prevents this controller from being put through a {@link PowerBudget}. Used by control loops which set its speed
+     * faster than once per scheduler cycle, since a budget would only write the last of those speeds.
+     * @throws IllegalArgumentException If this controller already has a power budget.
+     */
+    public final void disallowPowerBudget() {
+        if (powerBudget != null) {
+            throw new IllegalArgumentException("This MotorController has a power budget, so it cannot be driven faster than the budget writes!");
+        }
+        budgetDisallowed = true;
+    }
+
+    /**
+     * Gets the speed last given to {@link #setSpeed(double)}, which a {@link PowerBudget} has not necessarily written yet.
+     */
+    final double getRequestedSpeed() {
+        synchronized (outputLock) {
+            return requestedSpeed;
+        }
+    }
+
+    /**
+     * Writes the requested speed scaled by a {@link PowerBudget}.
+     */
+    final void applyBudgetedSpeed(double scale) {
+        synchronized (outputLock) {
+            write(clampToLimitSwitches(requestedSpeed * scale));
+        }
+    }
+
+    /**
+     * Gets the number of direct and indirect followers of this controller.
+     */
+    final int getFollowerCount() {
+        return followerPlan.length;
+    }
+
+    /**
+     * Gets the execution time metrics of this controller, which are published once they are named.
+     */
+    public final ControllerMetrics getMetrics() {
+        return metrics;
     }
 
     /**
      * Makes this motor controller follow another motor controller, with support for inversion.
      * @param leader The motor controller to follow.
      * @param inverted Whether to drive the opposite direction of the leader.
+     * @throws IllegalArgumentException If following {@code leader} would create a cycle.
      */
     public final void follow(MotorController leader, boolean inverted) {
         if (following) {
             throw new IllegalStateException("This MotorController is already following another MotorController!");
         }
+
+        for (var ancestor = leader; ancestor != null; ancestor = ancestor.leader) {
+            if (ancestor == this) {
+                throw new IllegalArgumentException("A MotorController cannot follow itself, directly or indirectly!");
+            }
+        }
+
         following = true;
         followingInverted = inverted;
 
+        this.leader = leader;
         leader.followers.add(this);
 
+        // Only the root of the follower tree ever updates followers, so only its plan needs to be rebuilt.
+        var root = leader;
+        while (root.leader != null) {
+            root = root.leader;
+        }
+        root.compileFollowerPlan();
+
         onFollow(leader, inverted);
     }
 
@@ -123,19 +334,44 @@ public abstract class MotorController {
     /**
      * Override this method in order to customize the way this controller follows other {@link MotorController}s.
      * This method is called whenever the leading motor controller changes speed.
-     * @param leaderSpeed The latest speed of the leader controller.
+     * @param leaderSpeed The latest speed of the leader controller, which was already shaped by the leader's pipeline.
      */
     protected void updateSelf(double leaderSpeed) {
         this.setActualSpeed(leaderSpeed * ((isFollowingInverted()) ? -1 : 1));
     }
 
+    /**
+     * Updates every direct and indirect follower of this controller.
+     * @param speed The speed of this controller.
+     */
     protected final void updateFollowers(double speed) {
-        followers.forEach((follower) -> follower.updateSelfAndFollowers(speed * ((isFollowingInverted()) ? -1 : 1)));
+        for (int i = 0; i < followerPlan.length; i++) {
+            followerPlan[i].updateSelf(speed * followerPlanSigns[i]);
+        }
     }
 
-    protected final void updateSelfAndFollowers(double speed) {
-        updateSelf(speed);
-        updateFollowers(speed);
+    /**
+     * Flattens the follower tree below this controller into {@link #followerPlan}, so that {@link #updateFollowers(double)}
+     * does not need to recurse.
+     */
+    private void compileFollowerPlan() {
+        var plan = new ArrayList<MotorController>();
+        var signs = new ArrayList<Double>();
+        addToFollowerPlan(1, plan, signs);
+
+        followerPlan = plan.toArray(new MotorController[0]);
+        followerPlanSigns = new double[signs.size()];
+        for (int i = 0; i < followerPlanSigns.length; i++) {
+            followerPlanSigns[i] = signs.get(i);
+        }
+    }
+
+    private void addToFollowerPlan(double sign, List<MotorController> plan, List<Double> signs) {
+        for (var follower : followers) {
+            plan.add(follower);
+            signs.add(sign);
+            follower.addToFollowerPlan(sign * ((follower.isFollowingInverted()) ? -1 : 1), plan, signs);
+        }
     }
 
     protected final boolean isFollowing() {
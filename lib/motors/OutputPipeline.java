@@ -0,0 +1,211 @@
+package frc.robot.modules.motors;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * A sequence of stages which shape the speed given to a {@link MotorController} before it is written, such as deadbands
+ * and slew rate limits. Instances must be constructed using a {@link Builder} object, whose stages are applied in the
+ * order they were added.
+ * <p>
+ * The stages are compiled into primitive arrays, and run in a single loop without allocating. Stages like the slew rate
+ * limit keep state, so each {@link MotorController} needs its own pipeline; use {@link #copy()} to share a definition.
+ */
+public final class OutputPipeline {
+
+    private static final int CLAMP = 0;
+    private static final int DEADBAND = 1;
+    private static final int SLEW_RATE = 2;
+    private static final int VOLTAGE_COMPENSATION = 3;
+    private static final int SCALE = 4;
+
+    private int[] stages = new int[0];
+    private double[] firstParameters = new double[0];
+    private double[] secondParameters = new double[0];
+
+    // State of the slew rate stages, and the speed the last apply() returned.
+    private double[] lastValues = new double[0];
+    private long[] lastTimestamps = new long[0];
+    private double lastOutput = 0;
+
+    private boolean attached = false;
+
+    private OutputPipeline() {}
+
+    /**
+     * Runs a speed through every stage.
+     */
+    public double apply(double speed) {
+        var value = speed;
+
+        for (var i = 0; i < stages.length; i++) {
+            switch (stages[i]) {
+                case CLAMP:
+                    value = Math.max(firstParameters[i], Math.min(secondParameters[i], value));
+                    break;
+                case DEADBAND: {
+                    // Rescaled, so that the output rises continuously from 0 at the edge of the deadband.
+                    var deadband = firstParameters[i];
+                    var magnitude = Math.abs(value);
+                    value = (magnitude < deadband) ? 0 : Math.copySign((magnitude - deadband) / (1 - deadband), value);
+                    break;
+                }
+                case SLEW_RATE: {
+                    var now = RobotController.getFPGATime();
+                    // The first speed is limited as if one robot loop period had passed.
+                    var elapsed = (lastTimestamps[i] == 0) ? 0.02 : (now - lastTimestamps[i]) / 1e6;
+                    var maxChange = firstParameters[i] * elapsed;
+                    value = lastValues[i] + Math.max(-maxChange, Math.min(maxChange, value - lastValues[i]));
+                    lastValues[i] = value;
+                    lastTimestamps[i] = now;
+                    break;
+                }
+                case VOLTAGE_COMPENSATION: {
+                    var voltage = RobotController.getBatteryVoltage();
+                    if (voltage > 0) {
+                        value *= firstParameters[i] / voltage;
+                    }
+                    break;
+                }
+                case SCALE:
+                    value *= firstParameters[i];
+                    break;
+            }
+        }
+
+        lastOutput = value;
+        return value;
+    }
+
+    /**
+     * Tells the slew rate stages the speed that was actually written, when it differs from the last one returned by
+     * {@link #apply(double)}, such as when a limit switch stopped the motor or a {@link PowerBudget} scaled it down.
+     * Their state is scaled in proportion, so that the next speed ramps from what the motor actually ran at.
+     */
+    void setWrittenSpeed(double speed) {
+        if (speed == lastOutput) return;
+
+        var ratio = (lastOutput != 0) ? speed / lastOutput : 0;
+        for (var i = 0; i < stages.length; i++) {
+            if (stages[i] == SLEW_RATE) {
+                lastValues[i] *= ratio;
+            }
+        }
+        lastOutput = speed;
+    }
+
+    /**
+     * Creates a pipeline with the same stages, and fresh state.
+     */
+    public OutputPipeline copy() {
+        var copy = new OutputPipeline();
+        copy.stages = stages.clone();
+        copy.firstParameters = firstParameters.clone();
+        copy.secondParameters = secondParameters.clone();
+        copy.lastValues = new double[stages.length];
+        copy.lastTimestamps = new long[stages.length];
+        return copy;
+    }
+
+    /**
+     * Marks this pipeline as used by a {@link MotorController}.
+     * @throws IllegalStateException If another controller already uses it.
+     */
+    void attach() {
+        if (attached) {
+            throw new IllegalStateException("This OutputPipeline is already used by another MotorController, give it a copy()!");
+        }
+        attached = true;
+    }
+
+    // --- Builder Pattern ---
+
+    public static class Builder {
+
+        private OutputPipeline product;
+        private boolean finished = false;
+
+        public Builder() {
+            product = new OutputPipeline();
+        }
+
+        /**
+         * Limits the speed to a range, such as to keep a mechanism from ever running at full speed.
+         */
+        public Builder clamp(double lower, double upper) {
+            checkFinished();
+            if (lower > upper) {
+                throw new IllegalArgumentException("The lower limit must not be above the upper limit!");
+            }
+            addStage(CLAMP, lower, upper);
+            return this;
+        }
+
+        /**
+         * Sets speeds closer to 0 than the deadband to 0, and rescales the rest so that they start from 0.
+         * @param deadband The width of the deadband, from 0 to 1.
+         */
+        public Builder deadband(double deadband) {
+            checkFinished();
+            if (deadband < 0 || deadband >= 1) {
+                throw new IllegalArgumentException("The deadband must be at least 0 and below 1!");
+            }
+            addStage(DEADBAND, deadband, 0);
+            return this;
+        }
+
+        /**
+         * Limits how fast the speed can change.
+         * @param ratePerSecond The largest change in speed per second, such as 2 to go from stopped to full speed in half a second.
+         */
+        public Builder slewRate(double ratePerSecond) {
+            checkFinished();
+            if (ratePerSecond <= 0) {
+                throw new IllegalArgumentException("The slew rate must be positive!");
+            }
+            addStage(SLEW_RATE, ratePerSecond, 0);
+            return this;
+        }
+
+        /**
+         * Scales the speed so that it results in the same voltage regardless of the battery voltage.
+         * @param nominalVoltage The voltage a speed of 1 corresponds to, usually 12.
+         */
+        public Builder voltageCompensation(double nominalVoltage) {
+            checkFinished();
+            addStage(VOLTAGE_COMPENSATION, nominalVoltage, 0);
+            return this;
+        }
+
+        public Builder scale(double factor) {
+            checkFinished();
+            addStage(SCALE, factor, 0);
+            return this;
+        }
+
+        private void addStage(int stage, double firstParameter, double secondParameter) {
+            var count = product.stages.length + 1;
+            product.stages = Arrays.copyOf(product.stages, count);
+            product.firstParameters = Arrays.copyOf(product.firstParameters, count);
+            product.secondParameters = Arrays.copyOf(product.secondParameters, count);
+
+            product.stages[count - 1] = stage;
+            product.firstParameters[count - 1] = firstParameter;
+            product.secondParameters[count - 1] = secondParameter;
+        }
+
+        private void checkFinished() {
+            if (finished) {
+                throw new IllegalStateException("Product has already been retrieved!");
+            }
+        }
+
+        public OutputPipeline retrieveProduct() {
+            finished = true;
+            product.lastValues = new double[product.stages.length];
+            product.lastTimestamps = new long[product.stages.length];
+            return product;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package frc.robot.modules.motors;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.modules.ControlLoop;
+
+/**
+ * Keeps the total current drawn by a set of {@link MotorController}s within what the battery can supply without
+ * browning out. The controllers' outputs are deferred, and written together once per cycle, at the end of the
+ * {@link ControlLoop}'s output phase, which runs after the commands when the robot calls {@link ControlLoop#finishCycle()}.
+ * Before they are written, the current each one would draw is estimated, and if the
+ * total is over budget, outputs are scaled down, lowest {@link ControlLoop.Priority} first.
+ * <p>
+ * The budget is the current that would pull the battery down to the minimum voltage, given its internal resistance and
+ * the voltage it would rest at with the predicted load removed. Loads which are not in the budget still sag the measured
+ * voltage, which makes the budget more conservative. Overestimating the budgeted load does the opposite: the rest voltage
+ * is estimated from the measured voltage plus the sag of the predicted load, so a predicted load higher than the actual
+ * one inflates the budget. Controllers which cannot measure their current are assumed to be stalled, which overestimates
+ * their load while they are moving, so the minimum voltage should keep a margin for that.
+ * <p>
+ * Controllers driven by a control loop on its own thread, such as with {@code RioSetpointController.Builder.runAt}, cannot be
+ * budgeted, since only the last speed set before each write would reach the motor.
+ * <p>
+ * Each pass works on preallocated primitive arrays, and does not allocate. Should only be used from the main robot thread.
+ */
+public final class PowerBudget {
+
+    private static PowerBudget defaultBudget;
+
+    private final double resistanceOhms;
+    private final double minimumVoltage;
+
+    private MotorController[] motors = new MotorController[0];
+    private int[] tiers = new int[0];
+    private double[] stallCurrents = new double[0];
+    private double[] requested = new double[0];
+    private double[] estimated = new double[0];
+
+    private final int tierCount = ControlLoop.Priority.values().length;
+    private final double[] tierCurrents = new double[tierCount];
+    private final double[] tierScales = new double[tierCount];
+
+    private boolean registered = false;
+    private double budgetCurrent = Double.POSITIVE_INFINITY;
+    private double predictedCurrent = 0;
+    private long scaledCycles = 0;
+
+    /**
+     * Creates a power budget.
+     * @param resistanceOhms The internal resistance of the battery and main wiring, usually around 0.02 ohms.
+     * @param minimumVoltage The battery voltage that should not be crossed, with a margin above the brownout voltage.
+     */
+    public PowerBudget(double resistanceOhms, double minimumVoltage) {
+        if (resistanceOhms <= 0) {
+            throw new IllegalArgumentException("The resistance must be positive!");
+        }
+        this.resistanceOhms = resistanceOhms;
+        this.minimumVoltage = minimumVoltage;
+        Arrays.fill(tierScales, 1);
+    }
+
+    /**
+     * Gets the budget shared by the whole robot, which assumes 0.02 ohms of resistance and keeps the battery 1 volt above the brownout voltage.
+     */
+    public static synchronized PowerBudget getDefault() {
+        if (defaultBudget == null) {
+            defaultBudget = new PowerBudget(0.02, RobotController.getBrownoutVoltage() + 1);
+        }
+        return defaultBudget;
+    }
+
+    /**
+     * Puts a motor controller's output through this budget. Its followers are budgeted along with it.
+     * @param motor The motor controller to budget. Must not be following another controller.
+     * @param priority Controllers are scaled down in order from {@link ControlLoop.Priority#BEST_EFFORT} to {@link ControlLoop.Priority#CRITICAL},
+     * each priority only once the ones below it are stopped.
+     * @param stallCurrentAmps The stall current of each motor driven by the controller, such as 105 amps for a NEO.
+     * @return This budget for method chaining.
+     */
+    public PowerBudget add(MotorController motor, ControlLoop.Priority priority, double stallCurrentAmps) {
+        motor.setPowerBudget(this);
+
+        var count = motors.length + 1;
+        motors = Arrays.copyOf(motors, count);
+        tiers = Arrays.copyOf(tiers, count);
+        stallCurrents = Arrays.copyOf(stallCurrents, count);
+        requested = new double[count];
+        estimated = new double[count];
+
+        motors[count - 1] = motor;
+        tiers[count - 1] = priority.ordinal();
+        stallCurrents[count - 1] = stallCurrentAmps;
+
+        if (!registered) {
+            registered = true;
+            ControlLoop.registerLast(new ControlLoop.Member() {
+                @Override
+                public void output() {
+                    allocate();
+                }
+            });
+        }
+        return this;
+    }
+
+    private void allocate() {
+        var motors = this.motors;
+        var count = motors.length;
+
+        // The measured voltage already includes the sag caused by last cycle's load.
+        var restVoltage = RobotController.getBatteryVoltage() + predictedCurrent * resistanceOhms;
+        budgetCurrent = Math.max(0, (restVoltage - minimumVoltage) / resistanceOhms);
+
+        for (var i = 0; i < count; i++) {
+            var motor = motors[i];
+            requested[i] = motor.getRequestedSpeed();
+            estimated[i] = motor.estimateCurrentDraw(requested[i], stallCurrents[i]) * (1 + motor.getFollowerCount());
+        }
+
+        Arrays.fill(tierCurrents, 0);
+        var total = 0.0;
+        for (var i = 0; i < count; i++) {
+            total += estimated[i];
+            tierCurrents[tiers[i]] += estimated[i];
+        }
+
+        // Take the excess out of the lowest priorities first. Speeds are scaled linearly, which takes at least as much
+        // current off as needed, since battery current grows with the square of the speed for a stalled motor.
+        var excess = total - budgetCurrent;
+        for (var tier = tierCount - 1; tier >= 0; tier--) {
+            var tierCurrent = tierCurrents[tier];
+            if (excess <= 0 || tierCurrent <= 0) {
+                tierScales[tier] = 1;
+            } else if (tierCurrent > excess) {
+                tierScales[tier] = (tierCurrent - excess) / tierCurrent;
+                excess = 0;
+            } else {
+                tierScales[tier] = 0;
+                excess -= tierCurrent;
+            }
+        }
+        if (total > budgetCurrent) {
+            scaledCycles++;
+        }
+
+        var predicted = 0.0;
+        for (var i = 0; i < count; i++) {
+            predicted += estimated[i] * tierScales[tiers[i]];
+        }
+        predictedCurrent = predicted;
+
+        for (var i = 0; i < count; i++) {
+            motors[i].applyBudgetedSpeed(tierScales[tiers[i]]);
+        }
+    }
+
+    /**
+     * Gets the current the budgeted controllers were allowed to draw in the last cycle, in amps.
+     */
+    public double getBudgetCurrent() {
+        return budgetCurrent;
+    }
+
+    /**
+     * Gets the current the budgeted controllers were predicted to draw in the last cycle, after scaling, in amps.
+     */
+    public double getPredictedCurrent() {
+        return predictedCurrent;
+    }
+
+    /**
+     * Gets the factor the outputs of a priority were scaled by in the last cycle.
+     */
+    public double getScale(ControlLoop.Priority priority) {
+        return tierScales[priority.ordinal()];
+    }
+
+    /**
+     * Gets the number of cycles in which outputs had to be scaled down.
+     */
+    public long getScaledCycles() {
+        return scaledCycles;
+    }
+}
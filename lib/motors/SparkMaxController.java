@@ -1,5 +1,7 @@
 package frc.robot.modules.motors;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.revrobotics.REVLibError;
 import com.revrobotics.spark.SparkMax;
 import com.revrobotics.spark.SparkBase.PersistMode;
@@ -7,11 +9,23 @@ import com.revrobotics.spark.SparkBase.ResetMode;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
 
+import edu.wpi.first.wpilibj.Timer;
+
 public class SparkMaxController extends MotorController {
 
     SparkMax controller;
     boolean followingSpark = false;
 
+    private double writeEpsilon = 0;
+    // Writes are only suppressed once a keep-alive period is set, so by default every write is sent.
+    private double keepAlivePeriod = 0;
+
+    private double lastWrittenSpeed = Double.NaN;
+    private double lastWriteTimestamp = 0;
+
+    private long issuedWrites = 0;
+    private long suppressedWrites = 0;
+
     public SparkMaxController(int canId, MotorType type) {
         this(new SparkMax(canId, type));
     }
@@ -21,10 +35,95 @@ public class SparkMaxController extends MotorController {
         this.controller = controller;
     }
 
+    @Override
+    protected double getMeasuredCurrent() {
+        return controller.getOutputCurrent();
+    }
+
+    /**
+     * Gets the SparkMax this controller drives.
+     */
+    public SparkMax getSparkMax() {
+        return controller;
+    }
+
+    /**
+     * Configures the SparkMax. If this is the first configuration of the SparkMax, and it is persisted and matches the last
+     * configuration persisted to this SparkMax according to {@link ConfigFingerprints}, it is not sent again.
+     */
     public REVLibError configure(SparkMaxConfig config, ResetMode resetMode, PersistMode persistMode) {
-        return controller.configure(config, resetMode, persistMode);
+        invalidateLastWrite();
+
+        var fingerprint = getPersistedFingerprint(config, resetMode, persistMode);
+        if (!ConfigFingerprints.getDefault().mustSend(controller.getDeviceId(), fingerprint)) {
+            return REVLibError.kOk;
+        }
+
+        var status = controller.configure(config, resetMode, persistMode);
+        ConfigFingerprints.getDefault().onConfigured(controller.getDeviceId(), fingerprint, status);
+        return status;
     } 
 
+    /**
+     * Configures the SparkMax on the {@link ConfigurationQueue}'s background thread, without blocking. Like
+     * {@link #configure(SparkMaxConfig, ResetMode, PersistMode)}, unchanged persisted configurations are skipped.
+     * @return A future which completes with the result of the configuration.
+     */
+    public CompletableFuture<REVLibError> configureAsync(SparkMaxConfig config, ResetMode resetMode, PersistMode persistMode) {
+        invalidateLastWrite();
+
+        var fingerprint = getPersistedFingerprint(config, resetMode, persistMode);
+        if (!ConfigFingerprints.getDefault().mustSend(controller.getDeviceId(), fingerprint)) {
+            return CompletableFuture.completedFuture(REVLibError.kOk);
+        }
+
+        return ConfigurationQueue.getDefault().submit(controller::configure, config, resetMode, persistMode)
+            .thenApply((status) -> {
+                ConfigFingerprints.getDefault().onConfigured(controller.getDeviceId(), fingerprint, status);
+                return status;
+            });
+    }
+
+    /**
+     * Only persisted configurations are fingerprinted, because the others are lost when the SparkMax reboots.
+     * @return The fingerprint of the configuration, or null if it is not persisted.
+     */
+    private static String getPersistedFingerprint(SparkMaxConfig config, ResetMode resetMode, PersistMode persistMode) {
+        if (persistMode != PersistMode.kPersistParameters) return null;
+        return ConfigFingerprints.fingerprint(config, resetMode);
+    }
+
+    /**
+     * Configures when writes to the SparkMax are skipped. A write is skipped when the new speed is within
+     * {@code epsilon} of the last speed that was actually written, unless {@code keepAlivePeriod} seconds have passed
+     * since that write. Commands to stop the motor are never skipped. By default, no writes are skipped.
+     * @param epsilon The largest change in speed that is not written. 0 only skips repeated speeds.
+     * @param keepAlivePeriod The longest time, in seconds, between two writes to the SparkMax.
+     * @return This motor controller for method chaining.
+     */
+    public SparkMaxController withWriteSuppression(double epsilon, double keepAlivePeriod) {
+        if (epsilon < 0 || keepAlivePeriod < 0) {
+            throw new IllegalArgumentException("Write suppression epsilon and keep-alive period cannot be negative!");
+        }
+        this.writeEpsilon = epsilon;
+        this.keepAlivePeriod = keepAlivePeriod;
+        return this;
+    }
+
+    /**
+     * Gets the number of speed writes that were sent to the SparkMax.
+     */
+    public long getIssuedWrites() {
+        return issuedWrites;
+    }
+
+    /**
+     * Gets the number of speed writes that were skipped because the speed had not changed enough.
+     */
+    public long getSuppressedWrites() {
+        return suppressedWrites;
+    }
+
     @Override
     public double getSpeed() {
         return controller.get();
@@ -32,7 +131,27 @@ public class SparkMaxController extends MotorController {
 
     @Override
     protected void setActualSpeed(double speed) {
+        var now = Timer.getFPGATimestamp();
+
+        var unchanged = Math.abs(speed - lastWrittenSpeed) <= writeEpsilon;
+        var stopping = speed == 0 && lastWrittenSpeed != 0;
+
+        if (unchanged && !stopping && now - lastWriteTimestamp < keepAlivePeriod) {
+            suppressedWrites++;
+            return;
+        }
+
         controller.set(speed);
+        lastWrittenSpeed = speed;
+        lastWriteTimestamp = now;
+        issuedWrites++;
+    }
+
+    /**
+     * Forces the next speed to be written, even if it matches the last one.
+     */
+    private void invalidateLastWrite() {
+        lastWrittenSpeed = Double.NaN;
     }
 
     @Override
@@ -44,7 +163,7 @@ public class SparkMaxController extends MotorController {
             var config = new SparkMaxConfig();
 
             config.follow(spark, inverted);
-            controller.configure(config, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+            configureAsync(config, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
         }
     }
 
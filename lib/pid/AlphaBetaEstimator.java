@@ -0,0 +1,132 @@
+package frc.robot.modules.pid;
+
+/**
+ * An alpha-beta filter, which estimates the position and velocity of a mechanism from noisy, delayed position measurements.
+ * Each measurement is assumed to have been taken a fixed latency before it is read, such as the period of a CAN status frame.
+ * The estimate is corrected at the time the measurement was taken, then extrapolated with the estimated velocity to the
+ * time it is read, so that a controller acts on where the mechanism is rather than where it was.
+ * <p>
+ * Higher alpha and beta trust measurements more, lower ones smooth out more noise. They must satisfy
+ * {@code 0 < alpha <= 1}, {@code 0 <= beta < 2} and {@code 4 - 2 * alpha - beta > 0} for the filter to be stable.
+ * <p>
+ * Sensors read faster than they update, such as CAN encoders read by a loop on its own thread, return the same measurement
+ * until their next frame. A measurement which has not changed within the latency of the last one is taken as a repeat of
+ * it, and only extrapolated, rather than taken as the mechanism having stopped.
+ * <p>
+ * A measurement which jumps further from the prediction than a reset threshold is taken as a position reset that
+ * {@link #reset()} was not told about, such as an encoder being zeroed by other code, and the estimate starts over from it.
+ */
+public class AlphaBetaEstimator {
+
+    private final double alpha;
+    private final double beta;
+    private final long latencyMicros;
+    private final double resetThreshold;
+
+    // The state at the time of the last measurement.
+    private double position = 0;
+    private double velocity = 0;
+    private long measurementTimestamp = 0;
+    private boolean initialized = false;
+
+    // The last measurement corrected with, and when it was read.
+    private double lastMeasurement = 0;
+    private long lastReadMicros = 0;
+
+    private double estimatedPosition = 0;
+
+    /**
+     * @param alpha How much of the position error is corrected by each measurement.
+     * @param beta How much of the position error, divided by the time between measurements, is corrected in the velocity.
+     * @param latencySeconds How long before it is read each measurement was taken.
+     */
+    public AlphaBetaEstimator(double alpha, double beta, double latencySeconds) {
+        this(alpha, beta, latencySeconds, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param alpha How much of the position error is corrected by each measurement.
+     * @param beta How much of the position error, divided by the time between measurements, is corrected in the velocity.
+     * @param latencySeconds How long before it is read each measurement was taken.
+     * @param resetThreshold How far a measurement must be from the predicted position to be taken as a position reset.
+     */
+    public AlphaBetaEstimator(double alpha, double beta, double latencySeconds, double resetThreshold) {
+        if (alpha <= 0 || alpha > 1 || beta < 0 || beta >= 2 || 4 - 2 * alpha - beta <= 0) {
+            throw new IllegalArgumentException("The alpha and beta gains would make the estimator unstable!");
+        }
+        if (latencySeconds < 0) {
+            throw new IllegalArgumentException("The latency must not be negative!");
+        }
+        if (!(resetThreshold > 0)) {
+            throw new IllegalArgumentException("The reset threshold must be positive!");
+        }
+        this.alpha = alpha;
+        this.beta = beta;
+        this.latencyMicros = (long)(latencySeconds * 1e6);
+        this.resetThreshold = resetThreshold;
+    }
+
+    /**
+     * Corrects the estimate with a measurement, and extrapolates it to the time the measurement is read. A repeat of the
+     * last measurement within its latency is only extrapolated.
+     * @param measurement The measured position.
+     * @param timestampMicros The time the measurement is read, in microseconds on the FPGA clock.
+     * @return The estimated position at {@code timestampMicros}.
+     */
+    public double update(double measurement, long timestampMicros) {
+        if (initialized && measurement == lastMeasurement && timestampMicros - lastReadMicros < latencyMicros) {
+            // The same frame read again, so there is nothing to correct, only time has passed since it was measured.
+            estimatedPosition = position + velocity * ((timestampMicros - measurementTimestamp) / 1e6);
+            return estimatedPosition;
+        }
+        lastMeasurement = measurement;
+        lastReadMicros = timestampMicros;
+
+        var measuredAt = timestampMicros - latencyMicros;
+
+        if (!initialized) {
+            initialized = true;
+            position = measurement;
+            velocity = 0;
+        } else {
+            var dt = (measuredAt - measurementTimestamp) / 1e6;
+            if (dt > 0) {
+                var predicted = position + velocity * dt;
+                var residual = measurement - predicted;
+                if (Math.abs(residual) > resetThreshold) {
+                    position = measurement;
+                    velocity = 0;
+                } else {
+                    position = predicted + alpha * residual;
+                    velocity += beta / dt * residual;
+                }
+            }
+        }
+        measurementTimestamp = measuredAt;
+
+        estimatedPosition = position + velocity * (latencyMicros / 1e6);
+        return estimatedPosition;
+    }
+
+    /**
+     * Gets the position estimated by the last {@link #update(double, long)}.
+     */
+    public double getPosition() {
+        return estimatedPosition;
+    }
+
+    /**
+     * Gets the estimated velocity, in position units per second.
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Forgets the estimate, so that the next measurement is taken as is. Should be called when the position is reset.
+     */
+    public void reset() {
+        initialized = false;
+        velocity = 0;
+    }
+}
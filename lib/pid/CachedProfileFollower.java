@@ -0,0 +1,88 @@
+package frc.robot.modules.pid;
+
+import java.util.function.LongSupplier;
+
+import edu.wpi.first.math.controller.PIDController;
+
+/**
+ * Follows profiles from a {@link ProfileCache} with a {@link PIDController}, as the equivalent of a
+ * {@link edu.wpi.first.math.controller.ProfiledPIDController} which does not integrate the profile every cycle.
+ * Profiles are sampled by the time since they were planned, so that they play at the right speed even when updates
+ * are skipped, such as when the {@link frc.robot.modules.ControlLoop} is over budget.
+ */
+class CachedProfileFollower implements OutputCalculator {
+
+    private final PIDController pid;
+    private final ProfileCache cache;
+    private final double period;
+    private final LongSupplier clock;
+
+    private ProfileCache.Profile profile;
+    private long plannedMicros;
+    private double elapsed = 0;
+    private double goal = 0;
+    private boolean replan = false;
+    // Whether the profile no longer describes where the mechanism is, so the next one must start from the measured position.
+    private boolean stale = true;
+
+    /**
+     * @param clock The timestamp of the current update, in microseconds.
+     */
+    CachedProfileFollower(PIDController pid, ProfileCache cache, double period, LongSupplier clock) {
+        this.pid = pid;
+        this.cache = cache;
+        this.period = period;
+        this.clock = clock;
+    }
+
+    double getGoal() {
+        return goal;
+    }
+
+    /**
+     * Sets the goal. Goals within the position tolerance of the current one are ignored, so that a setpoint which is set
+     * from a noisy measurement every cycle, such as by a held limit switch, does not replan the profile every cycle.
+     */
+    void setGoal(double goal) {
+        if (!stale && Math.abs(goal - this.goal) < pid.getErrorTolerance()) return;
+        this.goal = goal;
+        // The profile starts from the reference at the next update, which is the first time the current position is known.
+        replan = true;
+    }
+
+    /**
+     * Makes the next profile start from the measured position, rather than from the current profile. Called when the
+     * mechanism was moved without following the profile, such as while the output was overridden.
+     */
+    void restart() {
+        stale = true;
+    }
+
+    boolean atGoal() {
+        return profile != null && !replan && profile.isFinished(elapsed) && pid.atSetpoint();
+    }
+
+    @Override
+    public double calculate(double currentPosition, double setpoint) {
+        var now = clock.getAsLong();
+
+        if (replan) {
+            replan = false;
+            if (stale) {
+                // A measured start position is noisy, so it matches any cached profile that starts within the tolerance.
+                profile = cache.get(currentPosition, 0, goal, pid.getErrorTolerance());
+                stale = false;
+            } else {
+                var time = (now - plannedMicros) / 1e6;
+                profile = cache.get(profile.getPosition(time), profile.getVelocity(time), goal);
+            }
+            plannedMicros = now;
+        }
+
+        if (profile == null) return 0;
+
+        // Like ProfiledPIDController, aim for where the profile will be at the next update.
+        elapsed = (now - plannedMicros) / 1e6 + period;
+        return pid.calculate(currentPosition, profile.getPosition(elapsed));
+    }
+}
@@ -0,0 +1,345 @@
+package frc.robot.modules.pid;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
+import frc.robot.modules.ControlLoop;
+
+/**
+ * Moves several {@link SetpointController}s together, such as an arm mounted on an elevator, so that every axis starts on
+ * the same cycle and arrives at the same time. Instances must be constructed using a {@link Builder} object.
+ * <p>
+ * When a move starts, it is planned once into per-cycle setpoints for each axis, stored in primitive arrays, which are then
+ * streamed to the controllers by the {@link ControlLoop}. All axes follow the same trapezoidal profile, scaled to their
+ * distances, and slowed down to the most constrained axis. If that path crosses a {@link KeepOut} region, the axes are
+ * moved one at a time instead, in the first order that stays clear.
+ * <p>
+ * The axes must use plain PID control, since the coordinator already profiles their setpoints. A move started while
+ * another is in progress starts from the setpoints and velocities the axes are being streamed.
+ * Should only be used from the main robot thread.
+ */
+public class MotionCoordinator {
+
+    /**
+     * A combination of axis positions that must never be commanded, such as one where the arm would hit the frame.
+     */
+    @FunctionalInterface
+    public interface KeepOut {
+        /**
+         * @param positions The position of every axis, in the order the axes were added. Must not be modified.
+         */
+        public boolean isViolated(double[] positions);
+    }
+
+    private SetpointController[] axes = new SetpointController[0];
+    private Constraints[] constraints = new Constraints[0];
+    private KeepOut[] keepOuts = new KeepOut[0];
+    private double period = 0.02;
+
+    // The setpoints being streamed, indexed by axis then cycle, and the ones being planned.
+    private double[][] active = new double[0][];
+    private int activeLength = 0;
+    private double[][] planned = new double[0][];
+    private int plannedLength = 0;
+    private int nextSample = 0;
+
+    // Where the active move started. A new move starts from planStart, which only replaces it once the move is planned,
+    // so that a move which cannot be planned leaves the active one as it was.
+    private double[] start;
+    private double[] planStart;
+    // The velocity of every axis at planStart, which is worked out again for every move.
+    private double[] velocity;
+    private double[] probe;
+    private boolean[] moving;
+    private int[] order;
+
+    private MotionCoordinator() {}
+
+    private void initialize() {
+        var count = axes.length;
+        active = new double[count][64];
+        planned = new double[count][64];
+        start = new double[count];
+        planStart = new double[count];
+        velocity = new double[count];
+        probe = new double[count];
+        moving = new boolean[count];
+        order = new int[count];
+
+        ControlLoop.registerFirst(new ControlLoop.Member() {
+            // Setpoints are streamed before limit switches are enforced, so that the enforcement has the final say.
+            @Override
+            public void calculate() {
+                streamSetpoints();
+            }
+        });
+    }
+
+    private void streamSetpoints() {
+        if (nextSample >= activeLength) return;
+
+        for (var axis = 0; axis < axes.length; axis++) {
+            axes[axis].setSetpoint(active[axis][nextSample]);
+        }
+        nextSample++;
+    }
+
+    /**
+     * Plans and starts a move of every axis. If a move is in progress, the new one starts from its current setpoints,
+     * keeping as much of their velocity as goes towards the new targets.
+     * @param targets The target of every axis, in the order the axes were added.
+     * @return Whether a move which avoids every {@link KeepOut} was found. If not, the axes keep doing what they were doing.
+     */
+    public boolean moveTo(double[] targets) {
+        if (targets.length != axes.length) {
+            throw new IllegalArgumentException("There must be exactly one target per axis!");
+        }
+
+        // The previous move's start is still in start[], and is where the first streamed sample came from.
+        var wasMoving = isMoving();
+        for (var axis = 0; axis < axes.length; axis++) {
+            if (wasMoving) {
+                var previous = (nextSample >= 2) ? active[axis][nextSample - 2] : start[axis];
+                velocity[axis] = (active[axis][nextSample - 1] - previous) / period;
+                planStart[axis] = active[axis][nextSample - 1];
+            } else {
+                velocity[axis] = 0;
+                planStart[axis] = axes[axis].getCurrentPosition();
+            }
+        }
+
+        if (!planSynchronized(targets) && !planSequential(targets)) {
+            return false;
+        }
+
+        System.arraycopy(planStart, 0, start, 0, start.length);
+
+        var swap = active;
+        active = planned;
+        planned = swap;
+        activeLength = plannedLength;
+        nextSample = 0;
+        return true;
+    }
+
+    /**
+     * Stops streaming setpoints. Each axis holds the last setpoint it was given.
+     */
+    public void cancel() {
+        activeLength = 0;
+        nextSample = 0;
+    }
+
+    /**
+     * Is a move still streaming setpoints?
+     */
+    public boolean isMoving() {
+        return nextSample > 0 && nextSample < activeLength;
+    }
+
+    /**
+     * Has every setpoint of the last move been streamed, and is every axis at its setpoint?
+     */
+    public boolean isFinished() {
+        if (nextSample < activeLength) return false;
+
+        for (var axis : axes) {
+            if (!axis.atSetpoint()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets how long the last planned move takes, in seconds.
+     */
+    public double getMoveDuration() {
+        return activeLength * period;
+    }
+
+    private boolean planSynchronized(double[] targets) {
+        plannedLength = 0;
+        Arrays.fill(moving, true);
+        return appendSegment(planStart, targets, true);
+    }
+
+    /**
+     * Tries every order of moving the axes one at a time, using Heap's algorithm to go through the permutations.
+     */
+    private boolean planSequential(double[] targets) {
+        var count = axes.length;
+        for (var i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        if (planInOrder(targets)) return true;
+
+        var counters = new int[count];
+        var i = 0;
+        while (i < count) {
+            if (counters[i] < i) {
+                var swapWith = (i % 2 == 0) ? 0 : counters[i];
+                var temp = order[swapWith];
+                order[swapWith] = order[i];
+                order[i] = temp;
+
+                if (planInOrder(targets)) return true;
+
+                counters[i]++;
+                i = 0;
+            } else {
+                counters[i] = 0;
+                i++;
+            }
+        }
+        return false;
+    }
+
+    private boolean planInOrder(double[] targets) {
+        plannedLength = 0;
+        var from = Arrays.copyOf(planStart, planStart.length);
+        var to = Arrays.copyOf(planStart, planStart.length);
+
+        for (var step = 0; step < order.length; step++) {
+            var axis = order[step];
+            Arrays.fill(moving, false);
+            moving[axis] = true;
+            to[axis] = targets[axis];
+
+            // Only the first axis to move can keep its velocity, the others are held until their turn.
+            if (!appendSegment(from, to, step == 0)) return false;
+            from[axis] = targets[axis];
+        }
+        return true;
+    }
+
+    /**
+     * Appends the samples of a synchronized move of the moving axes to the plan.
+     * @param seeded Whether the move starts with the current velocity of the axes, rather than from rest. Since every
+     * axis follows the same normalized profile, only the part of their velocity along the move is kept.
+     * @return Whether every sample stays clear of every {@link KeepOut}.
+     */
+    private boolean appendSegment(double[] from, double[] to, boolean seeded) {
+        // Normalize the move to go from 0 to 1, limited by the most constrained axis.
+        var maxVelocity = Double.POSITIVE_INFINITY;
+        var maxAcceleration = Double.POSITIVE_INFINITY;
+        for (var axis = 0; axis < axes.length; axis++) {
+            var distance = Math.abs(to[axis] - from[axis]);
+            if (!moving[axis] || distance == 0) continue;
+            maxVelocity = Math.min(maxVelocity, constraints[axis].maxVelocity / distance);
+            maxAcceleration = Math.min(maxAcceleration, constraints[axis].maxAcceleration / distance);
+        }
+        if (maxVelocity == Double.POSITIVE_INFINITY) return true;
+
+        // Project the velocities onto the move, in normalized units per second.
+        var initialVelocity = 0.0;
+        if (seeded) {
+            var alongMove = 0.0;
+            var lengthSquared = 0.0;
+            for (var axis = 0; axis < axes.length; axis++) {
+                if (!moving[axis]) continue;
+                var distance = to[axis] - from[axis];
+                alongMove += velocity[axis] * distance;
+                lengthSquared += distance * distance;
+            }
+            initialVelocity = Math.max(0, Math.min(maxVelocity, alongMove / lengthSquared));
+        }
+
+        var profile = new TrapezoidProfile(new Constraints(maxVelocity, maxAcceleration));
+        var initial = new State(0, initialVelocity);
+        var goal = new State(1, 0);
+        profile.calculate(0, initial, goal);
+        var samples = (int)Math.ceil(profile.totalTime() / period);
+        ensurePlanCapacity(plannedLength + samples);
+
+        for (var sample = 1; sample <= samples; sample++) {
+            // The last sample lands exactly on the target.
+            var progress = (sample == samples) ? 1 : profile.calculate(sample * period, initial, goal).position;
+
+            for (var axis = 0; axis < axes.length; axis++) {
+                var position = moving[axis] ? from[axis] + (to[axis] - from[axis]) * progress : from[axis];
+                planned[axis][plannedLength] = position;
+                probe[axis] = position;
+            }
+            for (var keepOut : keepOuts) {
+                if (keepOut.isViolated(probe)) return false;
+            }
+            plannedLength++;
+        }
+        return true;
+    }
+
+    private void ensurePlanCapacity(int length) {
+        if (planned.length == 0 || planned[0].length >= length) return;
+
+        var capacity = Math.max(length, planned[0].length * 2);
+        for (var axis = 0; axis < planned.length; axis++) {
+            planned[axis] = Arrays.copyOf(planned[axis], capacity);
+        }
+    }
+
+    // --- Builder Pattern ---
+
+    public static class Builder {
+
+        private MotionCoordinator product;
+        private boolean finished = false;
+
+        public Builder() {
+            product = new MotionCoordinator();
+        }
+
+        /**
+         * Adds an axis. Targets and positions are given to the coordinator in the order the axes were added.
+         * @param controller The controller of the axis, which must not be profiled.
+         * @param constraints The maximum velocity and acceleration of the axis, in its position units per second.
+         */
+        public Builder withAxis(SetpointController controller, Constraints constraints) {
+            checkFinished();
+            if (controller.isProfiled()) {
+                throw new IllegalArgumentException("A profiled controller cannot be coordinated, give the axis plain PID control!");
+            }
+            var count = product.axes.length + 1;
+            product.axes = Arrays.copyOf(product.axes, count);
+            product.constraints = Arrays.copyOf(product.constraints, count);
+            product.axes[count - 1] = controller;
+            product.constraints[count - 1] = constraints;
+            return this;
+        }
+
+        public Builder withKeepOut(KeepOut keepOut) {
+            checkFinished();
+            product.keepOuts = Arrays.copyOf(product.keepOuts, product.keepOuts.length + 1);
+            product.keepOuts[product.keepOuts.length - 1] = keepOut;
+            return this;
+        }
+
+        /**
+         * Sets the time between streamed setpoints. Defaults to 0.02 seconds, the period of the {@link ControlLoop}.
+         */
+        public Builder withPeriod(double periodSeconds) {
+            checkFinished();
+            if (periodSeconds <= 0) {
+                throw new IllegalArgumentException("The period must be positive!");
+            }
+            product.period = periodSeconds;
+            return this;
+        }
+
+        private void checkFinished() {
+            if (finished) {
+                throw new IllegalStateException("Product has already been retrieved!");
+            }
+        }
+
+        public MotionCoordinator retrieveProduct() {
+            if (product.axes.length == 0) {
+                throw new IllegalStateException("A MotionCoordinator needs at least one axis!");
+            }
+            finished = true;
+            product.initialize();
+            return product;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package frc.robot.modules.pid;
+
+/**
+ * Calculates the output of a setpoint control loop from the current position and the setpoint.
+ * This is a primitive specialization of {@code BiFunction<Double, Double, Double>}, so that control loops
+ * which run every cycle do not box their inputs and outputs.
+ */
+@FunctionalInterface
+public interface OutputCalculator {
+
+    /**
+     * Calculates the output of the control loop.
+     * @param currentPosition The current position of the mechanism.
+     * @param setpoint The desired position of the mechanism.
+     * @return The output of the control loop, from -1 to 1.
+     */
+    public double calculate(double currentPosition, double setpoint);
+}
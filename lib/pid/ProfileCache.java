@@ -0,0 +1,228 @@
+package frc.robot.modules.pid;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
+import frc.robot.modules.ValueEnum;
+
+/**
+ * A cache of trapezoidal motion profiles, sampled into primitive arrays, so that following a profile is a table lookup
+ * instead of integrating a {@link TrapezoidProfile} every cycle.
+ * <p>
+ * Moves between the setpoints of a {@link ValueEnum} can be computed once with {@link #precompute(ValueEnum[])}, and are
+ * kept forever. Any other move is computed on first use and kept in a fixed number of runtime slots, with the least recently
+ * used one evicted when they are full.
+ * <p>
+ * A cache is not thread-safe. It can be shared between controllers with the same constraints, as long as they run on the same thread.
+ */
+public class ProfileCache {
+
+    // Start positions and goals closer than this are considered the same.
+    private static final double MATCH_TOLERANCE = 1e-9;
+
+    private final TrapezoidProfile profile;
+    private final double samplePeriod;
+
+    // Pinned profiles, computed by precompute(), are never evicted.
+    private Profile[] pinned = new Profile[0];
+
+    private final Profile[] runtime;
+    private final long[] lastUsed;
+    private long uses = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param constraints The maximum velocity and acceleration of every profile in this cache.
+     * @param samplePeriod The time between samples, usually the loop period of the controllers using this cache.
+     * @param runtimeCapacity The number of profiles computed at runtime that are kept before the least recently used one is evicted.
+     */
+    public ProfileCache(Constraints constraints, double samplePeriod, int runtimeCapacity) {
+        if (samplePeriod <= 0) {
+            throw new IllegalArgumentException("The sample period must be positive!");
+        }
+        if (runtimeCapacity < 1) {
+            throw new IllegalArgumentException("The runtime capacity must be at least 1!");
+        }
+        profile = new TrapezoidProfile(constraints);
+        this.samplePeriod = samplePeriod;
+        runtime = new Profile[runtimeCapacity];
+        lastUsed = new long[runtimeCapacity];
+    }
+
+    /**
+     * Computes the profiles from rest between every pair of these setpoints, and keeps them for the lifetime of the cache.
+     * Meant to be called at startup, for example with {@code cache.precompute(Position.values())}.
+     */
+    public void precompute(ValueEnum<Double>[] setpoints) {
+        var added = new Profile[setpoints.length * (setpoints.length - 1)];
+        var count = 0;
+
+        for (var from : setpoints) {
+            for (var to : setpoints) {
+                double start = from.getConstantValue();
+                double goal = to.getConstantValue();
+                if (start == goal || find(pinned, pinned.length, start, 0, goal, MATCH_TOLERANCE) != null) continue;
+                added[count++] = compute(start, 0, goal);
+            }
+        }
+
+        var merged = new Profile[pinned.length + count];
+        System.arraycopy(pinned, 0, merged, 0, pinned.length);
+        System.arraycopy(added, 0, merged, pinned.length, count);
+        pinned = merged;
+    }
+
+    /**
+     * Gets the profile from this state to the goal, computing it if it is not cached.
+     */
+    public Profile get(double startPosition, double startVelocity, double goal) {
+        return get(startPosition, startVelocity, goal, MATCH_TOLERANCE);
+    }
+
+    /**
+     * Gets the profile from this state to the goal, computing it if it is not cached. A cached profile which starts
+     * within a tolerance of this position is used as is, so that a noisy measured start position still finds the profile
+     * computed for the setpoint the mechanism is resting at.
+     * @param startTolerance How far from the start position a cached profile may start, such as the position tolerance
+     * of the controller following it.
+     */
+    public Profile get(double startPosition, double startVelocity, double goal, double startTolerance) {
+        var cached = find(pinned, pinned.length, startPosition, startVelocity, goal, startTolerance);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+
+        var slot = -1;
+        var leastRecent = 0;
+        for (var i = 0; i < runtime.length; i++) {
+            if (runtime[i] != null && runtime[i].matches(startPosition, startVelocity, goal, startTolerance)) {
+                slot = i;
+                break;
+            }
+            if (lastUsed[i] < lastUsed[leastRecent]) {
+                leastRecent = i;
+            }
+        }
+
+        if (slot >= 0) {
+            hits++;
+        } else {
+            misses++;
+            slot = leastRecent;
+            runtime[slot] = compute(startPosition, startVelocity, goal);
+        }
+
+        lastUsed[slot] = ++uses;
+        return runtime[slot];
+    }
+
+    public double getSamplePeriod() {
+        return samplePeriod;
+    }
+
+    /**
+     * Gets the number of lookups which found a cached profile.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups which had to compute a profile.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    private static Profile find(Profile[] profiles, int count, double startPosition, double startVelocity, double goal, double startTolerance) {
+        for (var i = 0; i < count; i++) {
+            if (profiles[i].matches(startPosition, startVelocity, goal, startTolerance)) {
+                return profiles[i];
+            }
+        }
+        return null;
+    }
+
+    private Profile compute(double startPosition, double startVelocity, double goal) {
+        var start = new State(startPosition, startVelocity);
+        var end = new State(goal, 0);
+
+        profile.calculate(0, start, end);
+        var sampleCount = (int)Math.ceil(profile.totalTime() / samplePeriod) + 1;
+
+        var positions = new double[sampleCount];
+        var velocities = new double[sampleCount];
+        for (var i = 0; i < sampleCount - 1; i++) {
+            var state = profile.calculate(i * samplePeriod, start, end);
+            positions[i] = state.position;
+            velocities[i] = state.velocity;
+        }
+        // The last sample is exactly the goal, so that the next move starts from a setpoint that matches the cache.
+        positions[sampleCount - 1] = goal;
+        velocities[sampleCount - 1] = 0;
+
+        return new Profile(startPosition, startVelocity, goal, samplePeriod, positions, velocities);
+    }
+
+    /**
+     * A motion profile sampled at a fixed period. Positions and velocities between samples are linearly interpolated.
+     */
+    public static final class Profile {
+
+        private final double startPosition;
+        private final double startVelocity;
+        private final double goal;
+        private final double samplePeriod;
+        private final double[] positions;
+        private final double[] velocities;
+
+        private Profile(double startPosition, double startVelocity, double goal, double samplePeriod, double[] positions, double[] velocities) {
+            this.startPosition = startPosition;
+            this.startVelocity = startVelocity;
+            this.goal = goal;
+            this.samplePeriod = samplePeriod;
+            this.positions = positions;
+            this.velocities = velocities;
+        }
+
+        private boolean matches(double startPosition, double startVelocity, double goal, double startTolerance) {
+            return Math.abs(this.startPosition - startPosition) <= startTolerance
+                && Math.abs(this.startVelocity - startVelocity) < MATCH_TOLERANCE
+                && Math.abs(this.goal - goal) < MATCH_TOLERANCE;
+        }
+
+        public double getGoal() {
+            return goal;
+        }
+
+        public double getTotalTime() {
+            return (positions.length - 1) * samplePeriod;
+        }
+
+        public boolean isFinished(double time) {
+            return time >= getTotalTime();
+        }
+
+        public double getPosition(double time) {
+            return interpolate(positions, time);
+        }
+
+        public double getVelocity(double time) {
+            return interpolate(velocities, time);
+        }
+
+        private double interpolate(double[] samples, double time) {
+            if (time <= 0) return samples[0];
+
+            var index = time / samplePeriod;
+            var lower = (int)index;
+            if (lower >= samples.length - 1) return samples[samples.length - 1];
+
+            var fraction = index - lower;
+            return samples[lower] + (samples[lower + 1] - samples[lower]) * fraction;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package frc.robot.modules.pid;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.LimitSwitch;
+
+/**
+ * Finds PID gains for a {@link SetpointController} with a relay feedback experiment. Around a center position, the output
+ * is overridden with a fixed duty cycle towards the center, flipping each time the mechanism crosses it (with some hysteresis).
+ * This makes the mechanism oscillate at its ultimate period, from which the ultimate gain and period are identified, and gains
+ * are proposed with the Ziegler-Nichols "some overshoot" rule, which settles faster than the classic rule.
+ * <p>
+ * The {@link LimitSwitch}es of the controller are soft limits: the relay flips at a pressed switch as if the mechanism had
+ * crossed the center, so the oscillation is cut short instead of driving into it. The experiment is aborted, and the
+ * output stopped, if the robot is disabled or the mechanism moves further from the center than allowed. When it
+ * finishes, the output is overridden to 0.
+ * <p>
+ * The relay is decided in the {@link ControlLoop}'s calculate phase, and written in its output phase, every cycle while
+ * the experiment runs. It can be run off-robot, against a physics model, with the {@code sim} package.
+ * Should only be used from the main robot thread.
+ */
+public class RelayAutoTuner {
+
+    public enum State {
+        IDLE, RUNNING, FINISHED, ABORTED
+    }
+
+    // Oscillations before these are ignored, while the mechanism settles into a steady oscillation.
+    private static final int IGNORED_PERIODS = 2;
+
+    private final SetpointController controller;
+    private final double relayOutput;
+    private final double hysteresis;
+    private final double maxExcursion;
+    private final int measuredPeriods;
+    private final double timeoutSeconds;
+
+    private boolean registered = false;
+    private State state = State.IDLE;
+
+    private double center;
+    private double output;
+    private boolean outputPending = false;
+    private long startMicros;
+    private long lastRiseMicros;
+    private int rises;
+    private double periodMax;
+    private double periodMin;
+
+    private double periodSum;
+    private double amplitudeSum;
+    private int periods;
+
+    private double ultimateGain = Double.NaN;
+    private double ultimatePeriod = Double.NaN;
+
+    /**
+     * @param controller The controller to tune. Its output is overridden while the experiment runs.
+     * @param relayOutput The duty cycle applied in each direction, such as 0.2.
+     * @param hysteresis How far past the center the mechanism must go before the output flips, to reject sensor noise.
+     * @param maxExcursion How far from the center the mechanism may go before the experiment is aborted.
+     * @param measuredPeriods How many oscillations are averaged to identify the ultimate gain and period.
+     * @param timeoutSeconds How long the experiment may run before it is aborted.
+     */
+    public RelayAutoTuner(SetpointController controller, double relayOutput, double hysteresis, double maxExcursion,
+            int measuredPeriods, double timeoutSeconds) {
+        if (relayOutput <= 0 || relayOutput > 1) {
+            throw new IllegalArgumentException("The relay output must be above 0 and at most 1!");
+        }
+        if (hysteresis < 0 || maxExcursion <= hysteresis) {
+            throw new IllegalArgumentException("The maximum excursion must be larger than the hysteresis!");
+        }
+        if (measuredPeriods < 1) {
+            throw new IllegalArgumentException("At least one period must be measured!");
+        }
+        this.controller = controller;
+        this.relayOutput = relayOutput;
+        this.hysteresis = hysteresis;
+        this.maxExcursion = maxExcursion;
+        this.measuredPeriods = measuredPeriods;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Starts the experiment around a position, which should leave room for the oscillation away from any limit switch.
+     * The setpoint of the controller is set to the center.
+     */
+    public void start(double center) {
+        if (!registered) {
+            registered = true;
+            ControlLoop.register(new ControlLoop.Member() {
+                @Override
+                public void calculate() {
+                    if (state == State.RUNNING) update();
+                }
+
+                @Override
+                public void output() {
+                    // Written every cycle while running, so that the relay stays in control even if something else
+                    // sets the controller's setpoint.
+                    if (state == State.RUNNING || outputPending) {
+                        outputPending = false;
+                        controller.overrideOutput(output);
+                    }
+                }
+            });
+        }
+
+        this.center = center;
+        startMicros = RobotController.getFPGATime();
+        rises = 0;
+        periods = 0;
+        periodSum = 0;
+        amplitudeSum = 0;
+        periodMax = Double.NEGATIVE_INFINITY;
+        periodMin = Double.POSITIVE_INFINITY;
+        ultimateGain = Double.NaN;
+        ultimatePeriod = Double.NaN;
+
+        // Keeps the controller's limit switch enforcement from moving the setpoint, and with it the output, during the experiment.
+        controller.setSetpoint(center);
+        state = State.RUNNING;
+        setOutput((controller.getCurrentPosition() < center) ? relayOutput : -relayOutput);
+    }
+
+    /**
+     * Stops the experiment, if it is running.
+     */
+    public void cancel() {
+        if (state == State.RUNNING) {
+            stop(State.ABORTED);
+        }
+    }
+
+    private void update() {
+        var now = RobotController.getFPGATime();
+        var position = controller.getCurrentPosition();
+        var error = position - center;
+
+        if (DriverStation.isDisabled()
+                || Math.abs(error) > maxExcursion
+                || (now - startMicros) / 1e6 > timeoutSeconds) {
+            stop(State.ABORTED);
+            return;
+        }
+
+        periodMax = Math.max(periodMax, position);
+        periodMin = Math.min(periodMin, position);
+
+        var limitSwitches = controller.readLimitSwitchFlags(false);
+        var atPositiveLimit = (limitSwitches & ReplayRecording.POSITIVE_LIMIT_SWITCH) != 0;
+        var atNegativeLimit = (limitSwitches & ReplayRecording.NEGATIVE_LIMIT_SWITCH) != 0;
+
+        if (output > 0 && (error > hysteresis || atPositiveLimit)) {
+            setOutput(-relayOutput);
+        } else if (output < 0 && (error < -hysteresis || atNegativeLimit)) {
+            setOutput(relayOutput);
+            onRise(now);
+        }
+    }
+
+    /**
+     * Called each time the output flips to positive, which is once per oscillation.
+     */
+    private void onRise(long now) {
+        rises++;
+        if (rises > IGNORED_PERIODS + 1) {
+            periodSum += (now - lastRiseMicros) / 1e6;
+            amplitudeSum += (periodMax - periodMin) / 2;
+            periods++;
+        }
+        lastRiseMicros = now;
+        periodMax = Double.NEGATIVE_INFINITY;
+        periodMin = Double.POSITIVE_INFINITY;
+
+        if (periods == measuredPeriods) {
+            var amplitude = amplitudeSum / periods;
+            // The describing function of a relay with hysteresis.
+            var effectiveAmplitude = Math.sqrt(Math.max(amplitude * amplitude - hysteresis * hysteresis, 1e-12));
+            ultimateGain = 4 * relayOutput / (Math.PI * effectiveAmplitude);
+            ultimatePeriod = periodSum / periods;
+            stop(State.FINISHED);
+        }
+    }
+
+    /**
+     * Sets the relay output, which is written in the next output phase of the {@link ControlLoop}.
+     */
+    private void setOutput(double output) {
+        this.output = output;
+        outputPending = true;
+    }
+
+    private void stop(State state) {
+        this.state = state;
+        setOutput(0);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the identified ultimate gain, in output per position unit, or {@code NaN} if the experiment has not finished.
+     */
+    public double getUltimateGain() {
+        return ultimateGain;
+    }
+
+    /**
+     * Gets the identified ultimate period in seconds, or {@code NaN} if the experiment has not finished.
+     */
+    public double getUltimatePeriod() {
+        return ultimatePeriod;
+    }
+
+    /**
+     * Gets the proposed gains, for {@link RioSetpointController.Builder#usingStandardPID(PIDConstants)} or
+     * {@link RioSetpointController.Builder#usingProfiledPID(PIDConstants, edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints)}.
+     * @throws IllegalStateException If the experiment has not finished.
+     */
+    public PIDConstants getProposedConstants() {
+        if (state != State.FINISHED) {
+            throw new IllegalStateException("The auto-tuner has not finished!");
+        }
+        var kP = 0.33 * ultimateGain;
+        var kI = 0.66 * ultimateGain / ultimatePeriod;
+        var kD = 0.11 * ultimateGain * ultimatePeriod;
+        return new PIDConstants(kP, kI, kD);
+    }
+}
@@ -0,0 +1,199 @@
+package frc.robot.modules.pid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import frc.robot.modules.logging.RecorderChannel;
+
+/**
+ * Every input a {@link RioSetpointController} consumed, one sample per update, so that its updates can be replayed
+ * with {@link SetpointReplay}. Controllers record these with {@link RioSetpointController.Builder#withRecorder(String, int)},
+ * and they are read back from the resulting log with {@link #fromLog(String, String)}.
+ * <p>
+ * The state of the controller in each sample is stored as bit flags, alongside the setpoint, position and output.
+ */
+public final class ReplayRecording {
+
+    /**
+     * The robot was enabled.
+     */
+    public static final int ENABLED = 1;
+
+    /**
+     * The setpoint was set since the previous sample, possibly to the same value.
+     */
+    public static final int SETPOINT_SET = 1 << 1;
+
+    /**
+     * The output was overridden, so it was not calculated.
+     */
+    public static final int OVERRIDDEN = 1 << 2;
+
+    /**
+     * The positive limit switch was pressed.
+     */
+    public static final int POSITIVE_LIMIT_SWITCH = 1 << 3;
+
+    /**
+     * The negative limit switch was pressed.
+     */
+    public static final int NEGATIVE_LIMIT_SWITCH = 1 << 4;
+
+    /**
+     * The position was reset since the previous sample, before the position of this sample was read.
+     */
+    public static final int POSITION_RESET = 1 << 5;
+
+    private static final String[] CHANNELS = { "setpoint", "position", "output", "flags" };
+
+    private long[] timestamps;
+    private double[] setpoints;
+    private double[] positions;
+    private double[] outputs;
+    private int[] flags;
+    private int size = 0;
+
+    /**
+     * Creates an empty recording, which grows as samples are added.
+     */
+    public ReplayRecording() {
+        this(256);
+    }
+
+    private ReplayRecording(int capacity) {
+        timestamps = new long[capacity];
+        setpoints = new double[capacity];
+        positions = new double[capacity];
+        outputs = new double[capacity];
+        flags = new int[capacity];
+    }
+
+    /**
+     * Reads the samples of a controller from a WPILib data log.
+     * @param path The path to the {@code .wpilog} file.
+     * @param name The name the controller was recorded under.
+     * @throws IOException If the log cannot be read.
+     * @throws IllegalArgumentException If the log does not contain the inputs of this controller, or they do not all have a
+     * value at the same timestamps, such as when the log was cut off while they were being written.
+     */
+    public static ReplayRecording fromLog(String path, String name) throws IOException {
+        var reader = new DataLogReader(path);
+        if (!reader.isValid()) {
+            throw new IOException("Not a valid data log: " + path);
+        }
+
+        // Entry ids are only known once their start records are read, and every series is appended once per sample.
+        var series = new HashMap<Integer, List<Double>>();
+        var timestampSeries = new HashMap<Integer, List<Long>>();
+        var entryIds = new HashMap<String, Integer>();
+
+        for (var record : reader) {
+            if (record.isStart()) {
+                var start = record.getStartData();
+                if (start.name.startsWith(name + "/")) {
+                    entryIds.put(start.name.substring(name.length() + 1), start.entry);
+                    series.put(start.entry, new ArrayList<>());
+                    timestampSeries.put(start.entry, new ArrayList<>());
+                }
+                continue;
+            }
+            if (record.isControl()) continue;
+
+            var values = series.get(record.getEntry());
+            if (values == null) continue;
+
+            var isFlags = entryIds.get("flags") != null && entryIds.get("flags") == record.getEntry();
+            values.add(isFlags ? (double)record.getInteger() : record.getDouble());
+            timestampSeries.get(record.getEntry()).add(record.getTimestamp());
+        }
+
+        for (var key : CHANNELS) {
+            if (!entryIds.containsKey(key)) {
+                throw new IllegalArgumentException("The log does not contain " + name + "/" + key + ", so it was not recorded for replay!");
+            }
+        }
+
+        var setpoints = series.get(entryIds.get("setpoint"));
+        var positions = series.get(entryIds.get("position"));
+        var outputs = series.get(entryIds.get("output"));
+        var flags = series.get(entryIds.get("flags"));
+        var timestamps = timestampSeries.get(entryIds.get("position"));
+
+        // Every input of a sample is logged with the same timestamp, which is what ties them together.
+        var count = timestamps.size();
+        for (var key : CHANNELS) {
+            if (series.get(entryIds.get(key)).size() != count) {
+                throw new IllegalArgumentException("The channels of " + name + " do not have the same number of samples, so the log is incomplete!");
+            }
+        }
+        for (var i = 0; i < count; i++) {
+            for (var key : CHANNELS) {
+                if (!timestampSeries.get(entryIds.get(key)).get(i).equals(timestamps.get(i))) {
+                    throw new IllegalArgumentException("The channels of " + name + " are not aligned at " + timestamps.get(i) + " us!");
+                }
+            }
+        }
+
+        var recording = new ReplayRecording(Math.max(count, 1));
+        for (var i = 0; i < count; i++) {
+            recording.add(timestamps.get(i), setpoints.get(i), positions.get(i), outputs.get(i), flags.get(i).intValue());
+        }
+        return recording;
+    }
+
+    /**
+     * Adds a sample, in the same form as {@link RecorderChannel#record(long, double, double, double, int)}.
+     */
+    public void add(long timestampMicros, double setpoint, double position, double output, int flags) {
+        if (size == timestamps.length) {
+            var capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            setpoints = Arrays.copyOf(setpoints, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            outputs = Arrays.copyOf(outputs, capacity);
+            this.flags = Arrays.copyOf(this.flags, capacity);
+        }
+
+        timestamps[size] = timestampMicros;
+        setpoints[size] = setpoint;
+        positions[size] = position;
+        outputs[size] = output;
+        this.flags[size] = flags;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int sample) {
+        return timestamps[sample];
+    }
+
+    public double getSetpoint(int sample) {
+        return setpoints[sample];
+    }
+
+    public double getPosition(int sample) {
+        return positions[sample];
+    }
+
+    public double getOutput(int sample) {
+        return outputs[sample];
+    }
+
+    public int getFlags(int sample) {
+        return flags[sample];
+    }
+
+    /**
+     * Gets the time between the first and last samples, in seconds.
+     */
+    public double getDuration() {
+        return (size < 2) ? 0 : (timestamps[size - 1] - timestamps[0]) / 1e6;
+    }
+}
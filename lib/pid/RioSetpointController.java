@@ -12,25 +12,75 @@ import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Encoder;
-import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.CommandScheduler;
-import edu.wpi.first.wpilibj2.command.FunctionalCommand;
-import edu.wpi.first.wpilibj2.command.Subsystem;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Threads;
+import frc.robot.modules.ControlLoop;
 import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.SensorSnapshot;
+import frc.robot.modules.logging.ControlRecorder;
+import frc.robot.modules.logging.LoopTimer;
+import frc.robot.modules.logging.RecorderChannel;
 import frc.robot.modules.motors.MotorController;
 
 /**
  * A highly customizable class for {@link SetpointController} implementations with setpoint control loops executing on the roboRIO.
  * Instances must be constructed using a {@link Builder} object.
+ * <p>
+ * By default, the control loop runs as part of the {@link ControlLoop}. It can instead run on its own high priority thread
+ * at a faster rate, using {@link Builder#runAt(double)}. In that case, {@link #getCurrentPosition()}, {@link #atSetpoint()} and
+ * {@link #getEstimatedVelocity()} report the state published by the loop thread's last iteration, and {@link #resetPosition()}
+ * is applied, estimator included, by its next one.
 */
 public class RioSetpointController extends SetpointController {
-    
-    private Command executeCommand;
+
+    /**
+     * The real-time priority of the threads running control loops with {@link Builder#runAt(double)}.
+     */
+    public static final int LOOP_THREAD_PRIORITY = 30;
+
+    // Only used when the control loop runs on its own thread.
+    private double loopPeriod = 0;
+    private Notifier notifier;
+    private SetpointHandoff handoff;
+    private double requestedSetpoint;
+    private boolean loopThreadPrioritized = false;
+    // Published by the loop thread for the main thread.
+    private volatile double publishedPosition;
+    private volatile boolean publishedAtSetpoint = false;
+    private volatile double publishedVelocity = Double.NaN;
 
     private boolean overridden = true;
 
-    private BiFunction<Double, Double, Double> calculator;
+    // Carried between the phases of the control loop.
+    private double rawPosition;
+    private double measuredPosition;
+    private double pendingOutput;
+    private boolean hasPendingOutput = false;
+    // The FPGA timestamp of the current update, in microseconds.
+    private long updateMicros;
+    private long updateNanos;
+
+    private final LoopTimer updateTimer = getMetrics().createTimer("update");
+
+    private ControlLoop.Priority priority = ControlLoop.Priority.CRITICAL;
+    private long skippedUpdates = 0;
+
+    private OutputCalculator calculator;
+    private boolean profiled = false;
+    // Called when a setpoint is set after the output was overridden, as the mechanism may have moved in the meantime.
+    private Runnable onResume;
     private DoubleConsumer outputSetter;
+    private double lastOutput = 0;
+
+    private AlphaBetaEstimator estimator;
+    private RelayAutoTuner autoTuner;
+
+    private RecorderChannel recorder;
+    private boolean setpointSetSinceRecord = false;
+    // A reset is recorded with the first sample whose position is read after it, which is when the estimator starts over.
+    private boolean resetBeforeRead = false;
+    private boolean resetSinceRecord = false;
 
     private DoubleSupplier setpointGetter;
     private DoubleConsumer setpointSetter;
@@ -38,74 +88,318 @@ public class RioSetpointController extends SetpointController {
     private BooleanSupplier atSetpointGetter;
     
     private DoubleSupplier currentPositionGetter;
+    private SensorSnapshot currentPosition;
     private Runnable resetPosition;
 
     private RioSetpointController() {}
 
     private void initialize() {
-        // Because this controller is neither a subsystem nor a command, we must take things into our own hands.
-        this.executeCommand = new FunctionalCommand(
-            () -> {},
-            this::update,
-            this::onFinish,
-            () -> false,
-            (Subsystem)null);
-        
-        CommandScheduler.getInstance().schedule(executeCommand);
+        if (loopPeriod > 0) {
+            handoff = new SetpointHandoff();
+            requestedSetpoint = setpointGetter.getAsDouble();
+            publishedPosition = currentPositionGetter.getAsDouble();
+            publishedVelocity = (estimator != null) ? 0 : Double.NaN;
+
+            notifier = new Notifier(this::updateOnLoopThread);
+            notifier.setName("RioSetpointController");
+            notifier.startPeriodic(loopPeriod);
+
+            overrideOutput(0);
+            return;
+        }
+
+        ControlLoop.register(new LoopMember(), priority);
 
         overrideOutput(0);
     }
 
     // --- Lifecycle Methods ---
 
-    private void update() {
+    private class LoopMember implements ControlLoop.Member {
+        // The time spent in each phase is added up, and recorded as a single update at the end of the output phase.
+        @Override
+        public void sense() {
+            var start = LoopTimer.start();
+            resetSinceRecord |= resetBeforeRead;
+            resetBeforeRead = false;
+            rawPosition = getCurrentPosition();
+            updateMicros = RobotController.getFPGATime();
+            measuredPosition = estimate(rawPosition, updateMicros);
+            updateNanos = LoopTimer.start() - start;
+        }
+
+        @Override
+        public void calculate() {
+            var start = LoopTimer.start();
+            calculateOutput();
+            updateNanos += LoopTimer.start() - start;
+        }
+
+        private void calculateOutput() {
+            hasPendingOutput = false;
+
+            if (DriverStation.isDisabled()) {
+                overridden = true;
+                pendingOutput = 0;
+                hasPendingOutput = true;
+                return;
+            }
+
+            if (!overridden) {
+                pendingOutput = clampToLimitSwitches(calculator.calculate(measuredPosition, getSetpoint()));
+                hasPendingOutput = true;
+            }
+        }
+
+        @Override
+        public void output() {
+            var start = LoopTimer.start();
+
+            if (hasPendingOutput) {
+                writeOutput(pendingOutput);
+            }
+
+            if (recorder != null) {
+                recorder.record(updateMicros, getSetpoint(), rawPosition, lastOutput, captureFlags(false));
+            }
+
+            if (start != 0) {
+                updateTimer.record(updateNanos + LoopTimer.start() - start);
+            }
+        }
+
+        @Override
+        public void onSkipped() {
+            skippedUpdates++;
+        }
+    }
+
+    /**
+     * The equivalent of {@link LoopMember} when the control loop runs on its own thread. Everything in here, including
+     * the calculator and output, is only ever touched by the loop thread; the main thread talks to it through {@link #handoff}.
+     */
+    private void updateOnLoopThread() {
+        if (!loopThreadPrioritized) {
+            loopThreadPrioritized = true;
+            Threads.setCurrentThreadPriority(true, LOOP_THREAD_PRIORITY);
+        }
+
+        var start = LoopTimer.start();
+
+        var polled = handoff.poll();
+        if (polled) {
+            if (handoff.isOverride()) {
+                overridden = true;
+                writeOutput(handoff.getValue());
+            } else {
+                applySetpoint(handoff.getValue());
+            }
+        }
+
+        if (handoff.pollReset()) {
+            resetPosition.run();
+            if (estimator != null) {
+                estimator.reset();
+            }
+            resetSinceRecord = true;
+        }
+
         if (DriverStation.isDisabled()) {
-            overrideOutput(0);
-            return;
+            overridden = true;
+            writeOutput(0);
         }
-        
+
+        // The snapshot cache belongs to the main thread, so the loop thread reads the sensor directly.
+        rawPosition = currentPositionGetter.getAsDouble();
+        updateMicros = RobotController.getFPGATime();
+        measuredPosition = estimate(rawPosition, updateMicros);
+
         if (!overridden) {
-            outputSetter.accept(calculator.apply(getCurrentPosition(), getSetpoint()));
+            var output = calculator.calculate(measuredPosition, setpointGetter.getAsDouble());
+            // The limit switch bank is only polled once per scheduler cycle, which is too stale for this loop.
+            writeOutput(clampToLimitSwitches(output, true));
+        }
+
+        if (recorder != null) {
+            recorder.record(updateMicros, setpointGetter.getAsDouble(), rawPosition, lastOutput, captureFlags(true));
+        }
+
+        // Published before the request is marked as applied, so that the main thread never sees the new request with the old state.
+        if (estimator != null) {
+            publishedVelocity = estimator.getVelocity();
         }
+        publishedPosition = rawPosition;
+        publishedAtSetpoint = atSetpointGetter.getAsBoolean();
+        if (polled) {
+            handoff.markApplied();
+        }
+
+        updateTimer.stop(start);
     }
 
-    private void onFinish(boolean interrupted) {
-        overrideOutput(0);
-        CommandScheduler.getInstance().schedule(executeCommand); // On the bright side, update() will always be called.
+    /**
+     * Captures the state of this controller for {@link ReplayRecording}, and starts tracking setpoint changes for the next sample.
+     * @param onLoopThread Whether this is called from the loop thread of {@link Builder#runAt(double)}, which reads the
+     * limit switches directly.
+     */
+    private int captureFlags(boolean onLoopThread) {
+        var flags = readLimitSwitchFlags(onLoopThread);
+        if (DriverStation.isEnabled()) flags |= ReplayRecording.ENABLED;
+        if (overridden) flags |= ReplayRecording.OVERRIDDEN;
+        if (setpointSetSinceRecord) flags |= ReplayRecording.SETPOINT_SET;
+        if (resetSinceRecord) flags |= ReplayRecording.POSITION_RESET;
+
+        setpointSetSinceRecord = false;
+        resetSinceRecord = false;
+        return flags;
+    }
+
+    /**
+     * Runs one recorded update through the estimator and the calculator, as {@link SetpointReplay} does. Nothing is read from sensors
+     * or written to outputs.
+     * @return The output this controller would have calculated, or the recorded output if it was not calculated.
+     */
+    double replayUpdate(long timestampMicros, double position, double setpoint, double recordedOutput, int flags) {
+        updateMicros = timestampMicros;
+        if ((flags & ReplayRecording.POSITION_RESET) != 0 && estimator != null) {
+            estimator.reset();
+        }
+        var estimatedPosition = estimate(position, timestampMicros);
+
+        // The recorded setpoint is the one the output was calculated with, even if it was set before the recording started.
+        // Setting it again can restart a profile, so it is only set again when the controller did.
+        if ((flags & ReplayRecording.SETPOINT_SET) != 0) {
+            applySetpoint(setpoint);
+        } else if (setpoint != setpointGetter.getAsDouble()) {
+            setpointSetter.accept(setpoint);
+        }
+
+        if ((flags & ReplayRecording.ENABLED) == 0 || (flags & ReplayRecording.OVERRIDDEN) != 0) {
+            overridden = true;
+            return recordedOutput;
+        }
+        overridden = false;
+
+        var output = calculator.calculate(estimatedPosition, setpointGetter.getAsDouble());
+        if (output > 0 && (flags & ReplayRecording.POSITIVE_LIMIT_SWITCH) != 0) return 0;
+        if (output < 0 && (flags & ReplayRecording.NEGATIVE_LIMIT_SWITCH) != 0) return 0;
+        return output;
+    }
+
+    private void applySetpoint(double setpoint) {
+        if (overridden && onResume != null) {
+            onResume.run();
+        }
+        overridden = false;
+        setpointSetSinceRecord = true;
+        setpointSetter.accept(setpoint);
+    }
+
+    private double estimate(double rawPosition, long timestampMicros) {
+        return (estimator != null) ? estimator.update(rawPosition, timestampMicros) : rawPosition;
+    }
+
+    private void writeOutput(double output) {
+        lastOutput = output;
+        outputSetter.accept(output);
     }
 
     // --- Overridden Methods ---
 
     @Override
     public void overrideOutput(double speed) {
+        if (handoff != null) {
+            handoff.publishOverride(speed);
+            return;
+        }
         overridden = true;
-        outputSetter.accept(speed);
+        writeOutput(speed);
     }
 
     @Override
     public double getSetpoint() {
+        if (handoff != null) {
+            return requestedSetpoint;
+        }
         return setpointGetter.getAsDouble();
     }
 
     @Override
     public void setSetpoint(double setpoint) {
-        overridden = false;
-        setpointSetter.accept(setpoint);
+        if (handoff != null) {
+            requestedSetpoint = setpoint;
+            handoff.publishSetpoint(setpoint);
+            return;
+        }
+        applySetpoint(setpoint);
     }
 
     @Override
     public boolean atSetpoint() {
+        if (handoff != null) {
+            // Until the loop thread has applied the latest setpoint, it has not been reached either.
+            return handoff.isApplied() && publishedAtSetpoint;
+        }
         return atSetpointGetter.getAsBoolean();
     }
 
+    @Override
+    public boolean isProfiled() {
+        return profiled;
+    }
+
     @Override
     public double getCurrentPosition() {
-        return currentPositionGetter.getAsDouble();
+        if (handoff != null) {
+            return publishedPosition;
+        }
+        return currentPosition.getAsDouble();
+    }
+
+    /**
+     * Gets the number of cycles this controller was not updated, and held its last output, because the
+     * {@link ControlLoop} was over budget.
+     */
+    public long getSkippedUpdates() {
+        return skippedUpdates;
+    }
+
+    /**
+     * Gets the auto-tuner set with {@link Builder#withAutoTuner(double, double, double)}.
+     * @throws IllegalStateException If this controller was built without one.
+     */
+    public RelayAutoTuner getAutoTuner() {
+        if (autoTuner == null) {
+            throw new IllegalStateException("This controller was built without an auto-tuner!");
+        }
+        return autoTuner;
+    }
+
+    /**
+     * Gets the velocity estimated by the estimator set with {@link Builder#withEstimator(double, double, double)}.
+     * With {@link Builder#runAt(double)}, this is the velocity published by the loop thread's last iteration.
+     * @return The estimated velocity in position units per second, or {@code NaN} if there is no estimator.
+     */
+    public double getEstimatedVelocity() {
+        if (handoff != null) {
+            return publishedVelocity;
+        }
+        return (estimator != null) ? estimator.getVelocity() : Double.NaN;
     }
 
     @Override
     public void resetPosition() {
+        if (handoff != null) {
+            // The estimator belongs to the loop thread, which resets it along with the position.
+            handoff.requestReset();
+            return;
+        }
         resetPosition.run();
+        if (estimator != null) {
+            estimator.reset();
+        }
+        resetBeforeRead = true;
+        currentPosition.invalidate();
     }
 
     // --- Builder Pattern ---
@@ -115,12 +409,35 @@ public class RioSetpointController extends SetpointController {
         
         private RioSetpointController product;
         private boolean finished = false;
+        private MotorController motorController;
 
         public Builder() {
             product = new RioSetpointController();
         }
 
         // --- General Construction Methods ---
+
+        /**
+         * Runs the control loop on its own high priority thread, instead of as part of the {@link ControlLoop}.
+         * Setpoints, overrides and position resets are handed to that thread without locking, and only that thread
+         * touches the sensor, calculator and output. Must be called before the output
+         * calculator is set, so that {@link #usingStandardPID(PIDConstants)} and {@link #usingProfiledPID(PIDConstants, Constraints)}
+         * can use the loop period. A motor controller driven by the loop thread cannot be put through a
+         * {@link frc.robot.modules.motors.PowerBudget}, which would only write its speed once per scheduler cycle.
+         * @param periodSeconds The period of the control loop, such as 0.005 for 200 Hz or 0.001 for 1 kHz.
+         */
+        public Builder runAt(double periodSeconds) {
+            checkFinished();
+            if (periodSeconds <= 0) {
+                throw new IllegalArgumentException("The loop period must be positive!");
+            }
+            if (product.calculator != null) {
+                throw new IllegalStateException("runAt must be called before the output calculator is set!");
+            }
+            product.loopPeriod = periodSeconds;
+            return this;
+        }
+
         public Builder withSetpointHandling(DoubleSupplier setpointGetter, DoubleConsumer setpointSetter, BooleanSupplier atSetpointGetter) {
             checkFinished();
             product.setpointGetter = setpointGetter;
@@ -129,25 +446,92 @@ public class RioSetpointController extends SetpointController {
             return this;
         }
 
-        public Builder withOutputCalculator(BiFunction<Double, Double, Double> calculator) {
+        public Builder withPrimitiveOutputCalculator(OutputCalculator calculator) {
             checkFinished();
             product.calculator = calculator;
+            product.profiled = false;
+            product.onResume = null;
+            return this;
+        }
+
+        /**
+         * Boxed variant of {@link #withPrimitiveOutputCalculator(OutputCalculator)}, kept for compatibility.
+         * Prefer the primitive variant, as this one allocates on every update.
+         */
+        public Builder withOutputCalculator(BiFunction<Double, Double, Double> calculator) {
+            checkFinished();
+            withPrimitiveOutputCalculator((currentPosition, setpoint) -> calculator.apply(currentPosition, setpoint));
             return this;
         }
         
         public Builder withOutput(DoubleConsumer output) {
             checkFinished();
             product.outputSetter = output;
+            motorController = null;
             return this;
         }
 
         public Builder withCurrentPositionSupplier(DoubleSupplier currentPositionGetter, Runnable resetPosition) {
             checkFinished();
             product.currentPositionGetter = currentPositionGetter;
+            product.currentPosition = new SensorSnapshot(currentPositionGetter);
             product.resetPosition = resetPosition;
             return this;
         }
         
+        /**
+         * Runs every position measurement through an {@link AlphaBetaEstimator} before it reaches the output calculator,
+         * which smooths out noise and compensates for the measurement's latency. Limit switch enforcement and
+         * {@link RioSetpointController#getCurrentPosition()} still use the raw measurement.
+         * @param alpha How much of the position error is corrected by each measurement.
+         * @param beta How much of the position error, divided by the loop period, is corrected in the velocity.
+         * @param latencySeconds How long before it is read each measurement was taken, such as the status frame period
+         * of a CAN motor controller.
+         */
+        public Builder withEstimator(double alpha, double beta, double latencySeconds) {
+            checkFinished();
+            product.estimator = new AlphaBetaEstimator(alpha, beta, latencySeconds);
+            return this;
+        }
+
+        /**
+         * Like {@link #withEstimator(double, double, double)}, but takes a measurement which jumps further than a threshold
+         * from the estimate as a position reset, so that resets done without {@link RioSetpointController#resetPosition()},
+         * such as by other code zeroing the encoder, do not throw the estimate off. The same happens when replaying.
+         * @param resetThreshold How far from the estimate a measurement must be to be taken as a reset, which should be more
+         * than the mechanism can move in one update.
+         */
+        public Builder withEstimator(double alpha, double beta, double latencySeconds, double resetThreshold) {
+            checkFinished();
+            product.estimator = new AlphaBetaEstimator(alpha, beta, latencySeconds, resetThreshold);
+            return this;
+        }
+
+        /**
+         * Adds a {@link RelayAutoTuner}, available from {@link RioSetpointController#getAutoTuner()}, which proposes gains
+         * for this controller from a relay feedback experiment. It averages 4 oscillations, and gives up after 20 seconds.
+         * @param relayOutput The duty cycle applied in each direction, such as 0.2.
+         * @param hysteresis How far past the center the mechanism must go before the output flips, to reject sensor noise.
+         * @param maxExcursion How far from the center the mechanism may go before the experiment is aborted.
+         */
+        public Builder withAutoTuner(double relayOutput, double hysteresis, double maxExcursion) {
+            checkFinished();
+            withAutoTuner(relayOutput, hysteresis, maxExcursion, 4, 20);
+            return this;
+        }
+
+        /**
+         * Like {@link #withAutoTuner(double, double, double)}, but with a chosen number of oscillations to average, and
+         * time limit, such as for mechanisms which oscillate slowly.
+         * @param measuredPeriods How many oscillations are averaged to identify the ultimate gain and period.
+         * @param timeoutSeconds How long the experiment may run before it is aborted.
+         */
+        public Builder withAutoTuner(double relayOutput, double hysteresis, double maxExcursion, int measuredPeriods, double timeoutSeconds) {
+            checkFinished();
+            product.autoTuner = new RelayAutoTuner(product, relayOutput, hysteresis, maxExcursion, measuredPeriods, timeoutSeconds);
+            return this;
+        }
+
         // --- Concrete implementation methods ---
 
         public Builder usingEncoder(Encoder encoder) {
@@ -159,22 +543,76 @@ public class RioSetpointController extends SetpointController {
         public Builder usingMotorController(MotorController controller) {
             checkFinished();
             withOutput(controller::setSpeed);
+            motorController = controller;
             return this;
         }
 
         public Builder usingStandardPID(PIDConstants constants) {
             checkFinished();
-            var pid = new PIDController(constants.kP, constants.kI, constants.kD);
-            withOutputCalculator(pid::calculate);
+            var pid = new PIDController(constants.kP, constants.kI, constants.kD, getLoopPeriod());
+            withPrimitiveOutputCalculator(pid::calculate);
             withSetpointHandling(pid::getSetpoint, pid::setSetpoint, pid::atSetpoint);
             return this;
         }
 
         public Builder usingProfiledPID(PIDConstants constants, Constraints constraints) {
             checkFinished();
-            var pid = new ProfiledPIDController(constants.kP, constants.kI, constants.kD, constraints);
-            withOutputCalculator(pid::calculate);
-            withSetpointHandling(() -> pid.getGoal().position, pid::setGoal, pid::atSetpoint);
+            var pid = new ProfiledPIDController(constants.kP, constants.kI, constants.kD, constraints, getLoopPeriod());
+            // The goal is already stored in the controller, so there is no need to hand it to calculate() each cycle.
+            withPrimitiveOutputCalculator((currentPosition, setpoint) -> pid.calculate(currentPosition));
+            // atSetpoint() compares against the profile's intermediate setpoint, which is reached long before the goal.
+            withSetpointHandling(() -> pid.getGoal().position, pid::setGoal, pid::atGoal);
+            product.profiled = true;
+            return this;
+        }
+
+        /**
+         * Like {@link #usingProfiledPID(PIDConstants, Constraints)}, but follows profiles looked up from a {@link ProfileCache}
+         * instead of integrating a profile every update. The profiles are sampled at the cache's sample period, which should
+         * match the loop period.
+         */
+        public Builder usingCachedProfiledPID(PIDConstants constants, ProfileCache cache) {
+            checkFinished();
+            var pid = new PIDController(constants.kP, constants.kI, constants.kD, getLoopPeriod());
+            var controller = product;
+            var follower = new CachedProfileFollower(pid, cache, getLoopPeriod(), () -> controller.updateMicros);
+            withPrimitiveOutputCalculator(follower);
+            withSetpointHandling(follower::getGoal, follower::setGoal, follower::atGoal);
+            product.onResume = follower::restart;
+            product.profiled = true;
+            return this;
+        }
+
+        /**
+         * Sets how important it is for this controller to be updated every cycle when the {@link ControlLoop} is over budget.
+         * Defaults to {@link ControlLoop.Priority#CRITICAL}. Has no effect on controllers using {@link #runAt(double)}.
+         */
+        public Builder withPriority(ControlLoop.Priority priority) {
+            checkFinished();
+            product.priority = priority;
+            return this;
+        }
+
+        /**
+         * Records the setpoint, position and output of this controller every cycle, with the default {@link ControlRecorder}.
+         * The rest of its inputs are recorded as {@link ReplayRecording} flags, so its updates can be replayed with {@link SetpointReplay}.
+         * @param name The name of this controller in the log.
+         * @param capacity The number of samples buffered before they are written to the log. Samples recorded while the
+         * buffer is full are dropped.
+         */
+        public Builder withRecorder(String name, int capacity) {
+            checkFinished();
+            withRecorder(ControlRecorder.getDefault(), name, capacity);
+            return this;
+        }
+
+        /**
+         * Like {@link #withRecorder(String, int)}, but records with a recorder other than the default one, such as one
+         * writing to its own log.
+         */
+        public Builder withRecorder(ControlRecorder recorder, String name, int capacity) {
+            checkFinished();
+            product.recorder = recorder.createChannel(name, capacity);
             return this;
         }
 
@@ -184,14 +622,34 @@ public class RioSetpointController extends SetpointController {
             return this;
         }
 
+        private double getLoopPeriod() {
+            // The ControlLoop runs with the scheduler, at the default robot loop period.
+            return (product.loopPeriod > 0) ? product.loopPeriod : 0.02;
+        }
+
         private void checkFinished() {
             if (finished) {
                 throw new IllegalStateException("Product has already been retrieved!");
             }
         }
 
+        /**
+         * Retrieves the controller without starting its control loop, for {@link SetpointReplay}. Only the output calculator
+         * and setpoint handling need to be set.
+         */
+        RioSetpointController retrieveReplayProduct() {
+            finished = true;
+            if (product.calculator == null || product.setpointSetter == null) {
+                throw new IllegalStateException("A replayed controller needs an output calculator and setpoint handling!");
+            }
+            return product;
+        }
+
         public RioSetpointController retrieveProduct() {
             finished = true;
+            if (product.loopPeriod > 0 && motorController != null) {
+                motorController.disallowPowerBudget();
+            }
             product.initialize();
             return product;
         }
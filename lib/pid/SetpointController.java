@@ -1,7 +1,9 @@
 package frc.robot.modules.pid;
 
-import edu.wpi.first.wpilibj2.command.InstantCommand;
+import frc.robot.modules.ControlLoop;
 import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.logging.ControllerMetrics;
+import frc.robot.modules.logging.LoopTimer;
 
 /**
  * An base class describing self sufficient setpoint controllers, with limit switch support.
@@ -12,40 +14,120 @@ public abstract class SetpointController {
     LimitSwitch positiveLS;
     LimitSwitch negativeLS;
 
+    private final ControllerMetrics metrics = new ControllerMetrics();
+    private final LoopTimer limitSwitchTimer = metrics.createTimer("limitSwitches");
+
     /**
      * Set the limit switches of this controller. Note that if this controller already has its limit switches set,
      * this method will do nothing.
+     * <p>
+     * While a limit switch is pressed, the setpoint is kept from going past the current position, and the position is reset
+     * if the switch resets encoders. This is enforced every cycle at the start of the {@link ControlLoop}'s calculate phase,
+     * after triggers and commands have set their setpoints.
      * @param positiveLS The positive limit switch is the switch that is hit when this controller is run in the positive direction.
      * @param negativeLS The negative limit switch is the switch that is hit when this controller is run in the negative direction.
      * @return This controller for method chaining.
      */
     public final SetpointController withLimitSwitches(LimitSwitch positiveLS, LimitSwitch negativeLS) {
+        var hadLimitSwitches = this.positiveLS != null || this.negativeLS != null;
 
-        // When an LS is pressed, change the allowed range of PID speeds
         if (positiveLS != null && this.positiveLS == null) {
             this.positiveLS = positiveLS;
-
-            positiveLS.asTrigger().whileTrue(new InstantCommand( () -> {
-                setSetpoint(Math.min(getSetpoint(), getCurrentPosition()));
-                if (positiveLS.doesResetEncoders()) {
-                    resetPosition();
-                }
-            }));
         }
 
         if (negativeLS != null && this.negativeLS == null) {
             this.negativeLS = negativeLS;
+        }
 
-            negativeLS.asTrigger().whileTrue(new InstantCommand( () -> {
-                setSetpoint(Math.max(getSetpoint(), getCurrentPosition()));
-                if (negativeLS.doesResetEncoders()) {
-                    resetPosition();
+        if (!hadLimitSwitches && (this.positiveLS != null || this.negativeLS != null)) {
+            ControlLoop.register(new ControlLoop.Member() {
+                @Override
+                public void calculate() {
+                    enforceLimitSwitches();
                 }
-            }));
+            });
         }
         return this;
     }
 
+    /**
+     * Keeps the setpoint from going past a pressed limit switch, and resets the position if the switch resets encoders.
+     */
+    private void enforceLimitSwitches() {
+        var start = LoopTimer.start();
+
+        // The setpoint is only set when it actually changes, since setting it may be expensive, such as a profile being replanned.
+        if (positiveLS != null && positiveLS.isPressed()) {
+            var setpoint = getSetpoint();
+            var clampedSetpoint = Math.min(setpoint, getCurrentPosition());
+            if (clampedSetpoint != setpoint) {
+                setSetpoint(clampedSetpoint);
+            }
+            if (positiveLS.doesResetEncoders()) {
+                resetPosition();
+            }
+        }
+
+        if (negativeLS != null && negativeLS.isPressed()) {
+            var setpoint = getSetpoint();
+            var clampedSetpoint = Math.max(setpoint, getCurrentPosition());
+            if (clampedSetpoint != setpoint) {
+                setSetpoint(clampedSetpoint);
+            }
+            if (negativeLS.doesResetEncoders()) {
+                resetPosition();
+            }
+        }
+
+        limitSwitchTimer.stop(start);
+    }
+
+    /**
+     * Clamps an output to 0 if it would drive this controller into a pressed limit switch. Implementations which calculate
+     * their own output should pass it through this method. A switch is only read when the output drives towards it.
+     * @param output The calculated output.
+     * @return The output that is safe to apply.
+     */
+    protected final double clampToLimitSwitches(double output) {
+        return clampToLimitSwitches(output, false);
+    }
+
+    /**
+     * Like {@link #clampToLimitSwitches(double)}, but can read the switches right away instead of using their state as of
+     * the last poll of their {@link frc.robot.modules.LimitSwitchBank}.
+     * @param readNow Whether to read the switches right away, which control loops running on their own thread should do,
+     * as they run faster than the bank is polled.
+     */
+    protected final double clampToLimitSwitches(double output, boolean readNow) {
+        if (output > 0 && isPressed(positiveLS, readNow)) return 0;
+        if (output < 0 && isPressed(negativeLS, readNow)) return 0;
+        return output;
+    }
+
+    /**
+     * Reads the limit switches, as the {@link ReplayRecording#POSITIVE_LIMIT_SWITCH} and
+     * {@link ReplayRecording#NEGATIVE_LIMIT_SWITCH} flags.
+     * @param readNow Whether to read the switches right away, as in {@link #clampToLimitSwitches(double, boolean)}.
+     */
+    final int readLimitSwitchFlags(boolean readNow) {
+        var flags = 0;
+        if (isPressed(positiveLS, readNow)) flags |= ReplayRecording.POSITIVE_LIMIT_SWITCH;
+        if (isPressed(negativeLS, readNow)) flags |= ReplayRecording.NEGATIVE_LIMIT_SWITCH;
+        return flags;
+    }
+
+    private static boolean isPressed(LimitSwitch limitSwitch, boolean readNow) {
+        if (limitSwitch == null) return false;
+        return readNow ? limitSwitch.readPressed() : limitSwitch.isPressed();
+    }
+
+    /**
+     * Gets the execution time metrics of this controller, which are published once they are named.
+     */
+    public final ControllerMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Gets the setpoint this controller.
      * @return The setpoint of the controller. 
@@ -76,6 +158,14 @@ public abstract class SetpointController {
      */
     public abstract void resetPosition();
 
+    /**
+     * Does this controller follow its own motion profile to each setpoint, rather than going straight for it? Such
+     * controllers cannot be driven by a {@link MotionCoordinator}, which streams setpoints that are already profiled.
+     */
+    public boolean isProfiled() {
+        return false;
+    }
+
     /**
      * Overrides the PID output with this value, until {@link #setSetpoint()} is next called. 
      * @param speed The speed that is overriding the PID output. -1 to 1.
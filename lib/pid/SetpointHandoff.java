@@ -0,0 +1,114 @@
+package frc.robot.modules.pid;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free handoff of setpoint and output override requests from the main robot thread to a control loop running on
+ * another thread. Only the latest request is kept, which matches the semantics of {@link SetpointController}: a new
+ * setpoint or override always replaces the previous one.
+ * <p>
+ * Requests are published under a sequence lock: the sequence is odd while a request is being written, so the loop
+ * thread can tell when it has read a request that was only half written, and try again on its next iteration.
+ * There must only be one publishing thread and one polling thread.
+ */
+final class SetpointHandoff {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean overridden;
+    private volatile double value;
+    private final AtomicBoolean resetRequested = new AtomicBoolean();
+
+    // Written by the polling thread once it has applied a request, so that the publishing thread can tell when it took effect.
+    private volatile long appliedSequence = 0;
+
+    // Only accessed by the polling thread.
+    private long lastPolledSequence = 0;
+    private boolean polledOverridden;
+    private double polledValue;
+
+    /**
+     * Publishes a new setpoint. Called from the main robot thread.
+     */
+    void publishSetpoint(double setpoint) {
+        publish(false, setpoint);
+    }
+
+    /**
+     * Publishes a new output override. Called from the main robot thread.
+     */
+    void publishOverride(double speed) {
+        publish(true, speed);
+    }
+
+    /**
+     * Asks the control loop thread to reset the position. Unlike setpoints and overrides, a reset is never replaced by a
+     * later request. Called from the main robot thread.
+     */
+    void requestReset() {
+        resetRequested.set(true);
+    }
+
+    private void publish(boolean overridden, double value) {
+        sequence.incrementAndGet();
+        this.overridden = overridden;
+        this.value = value;
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * Checks for a request that has not been polled yet. Called from the control loop thread.
+     * @return True if there is a new request, which can be read with {@link #isOverride()} and {@link #getValue()}.
+     */
+    boolean poll() {
+        var before = sequence.get();
+        if (before == lastPolledSequence || (before & 1) != 0) return false;
+
+        var readOverridden = overridden;
+        var readValue = value;
+
+        if (sequence.get() != before) return false;
+
+        lastPolledSequence = before;
+        polledOverridden = readOverridden;
+        polledValue = readValue;
+        return true;
+    }
+
+    /**
+     * Checks for a reset requested with {@link #requestReset()}, and clears it. Called from the control loop thread.
+     */
+    boolean pollReset() {
+        return resetRequested.getAndSet(false);
+    }
+
+    /**
+     * Marks the last polled request as applied. Called from the control loop thread, after it has published the effects
+     * of the request.
+     */
+    void markApplied() {
+        appliedSequence = lastPolledSequence;
+    }
+
+    /**
+     * Has the control loop thread applied the latest request? Called from the main robot thread.
+     */
+    boolean isApplied() {
+        return appliedSequence == sequence.get();
+    }
+
+    /**
+     * Is the last polled request an output override, rather than a setpoint?
+     */
+    boolean isOverride() {
+        return polledOverridden;
+    }
+
+    /**
+     * Gets the setpoint or output override speed of the last polled request.
+     */
+    double getValue() {
+        return polledValue;
+    }
+}
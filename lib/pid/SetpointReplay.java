@@ -0,0 +1,120 @@
+package frc.robot.modules.pid;
+
+/**
+ * Replays the inputs of a {@link ReplayRecording} through a {@link RioSetpointController}'s output calculator, as fast
+ * as possible, and compares the outputs with the recorded ones. Replaying a match log through a modified controller
+ * shows exactly where, and by how much, the change would have affected the mechanism.
+ * <p>
+ * The replay is open loop: the recorded positions are used, regardless of the outputs the replayed controller calculates.
+ * Recorded position resets are replayed too, by resetting the estimator before the first position read after them, and
+ * an estimator with a reset threshold takes the same jumps for resets as it did live. The recorded setpoint is applied
+ * on every sample, so a recording can start after the setpoint was set.
+ */
+public final class SetpointReplay {
+
+    private SetpointReplay() {}
+
+    /**
+     * Replays a recording.
+     * @param builder A builder for the controller to replay, with at least an output calculator and setpoint handling.
+     * It is finished by the replay, and should not be used afterwards. Its output and position supplier are never used.
+     * @param recording The recorded inputs.
+     * @param tolerance How far an output can be from the recorded one without counting as a divergence.
+     */
+    public static Result replay(RioSetpointController.Builder builder, ReplayRecording recording, double tolerance) {
+        var controller = builder.retrieveReplayProduct();
+        var outputs = new double[recording.size()];
+
+        var start = System.nanoTime();
+        for (var i = 0; i < outputs.length; i++) {
+            outputs[i] = controller.replayUpdate(recording.getTimestamp(i),
+                recording.getPosition(i), recording.getSetpoint(i), recording.getOutput(i), recording.getFlags(i));
+        }
+        var replayNanos = System.nanoTime() - start;
+
+        return new Result(recording, outputs, tolerance, replayNanos);
+    }
+
+    /**
+     * The outputs of a replay, and how they differ from the recorded outputs.
+     */
+    public static final class Result {
+
+        private final double[] outputs;
+        private final double maxError;
+        private final double meanError;
+        private final int divergences;
+        private final int firstDivergence;
+        private final double speedup;
+
+        private Result(ReplayRecording recording, double[] outputs, double tolerance, long replayNanos) {
+            this.outputs = outputs;
+
+            var maxError = 0.0;
+            var totalError = 0.0;
+            var divergences = 0;
+            var firstDivergence = -1;
+            for (var i = 0; i < outputs.length; i++) {
+                var error = Math.abs(outputs[i] - recording.getOutput(i));
+                maxError = Math.max(maxError, error);
+                totalError += error;
+                if (error > tolerance) {
+                    divergences++;
+                    if (firstDivergence < 0) firstDivergence = i;
+                }
+            }
+
+            this.maxError = maxError;
+            this.meanError = (outputs.length > 0) ? totalError / outputs.length : 0;
+            this.divergences = divergences;
+            this.firstDivergence = firstDivergence;
+            this.speedup = (replayNanos > 0) ? recording.getDuration() / (replayNanos / 1e9) : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Gets the output replayed for a sample.
+         */
+        public double getOutput(int sample) {
+            return outputs[sample];
+        }
+
+        public int size() {
+            return outputs.length;
+        }
+
+        /**
+         * Gets the largest absolute difference between a replayed output and the recorded one.
+         */
+        public double getMaxError() {
+            return maxError;
+        }
+
+        /**
+         * Gets the mean absolute difference between the replayed outputs and the recorded ones.
+         */
+        public double getMeanError() {
+            return meanError;
+        }
+
+        /**
+         * Gets the number of samples whose output differs from the recorded one by more than the tolerance.
+         */
+        public int getDivergences() {
+            return divergences;
+        }
+
+        /**
+         * Gets the first sample whose output differs from the recorded one by more than the tolerance, or -1 if there is none.
+         */
+        public int getFirstDivergence() {
+            return firstDivergence;
+        }
+
+        /**
+         * Gets how many times faster than real time the recording was replayed.
+         */
+        public double getSpeedup() {
+            return speedup;
+        }
+    }
+}
@@ -1,14 +1,94 @@
 package frc.robot.modules.pid;
 
+import java.util.concurrent.CompletableFuture;
+
+import com.pathplanner.lib.config.PIDConstants;
+import com.revrobotics.REVLibError;
 import com.revrobotics.spark.SparkMax;
 import com.revrobotics.spark.SparkBase.ControlType;
+import com.revrobotics.spark.SparkBase.PersistMode;
+import com.revrobotics.spark.SparkBase.ResetMode;
+import com.revrobotics.spark.config.SparkMaxConfig;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.SensorSnapshot;
+import frc.robot.modules.logging.ControlRecorder;
+import frc.robot.modules.logging.RecorderChannel;
+import frc.robot.modules.motors.SparkMaxController;
 
+/**
+ * A {@link SetpointController} which runs its control loop on a SparkMax's onboard controller, at 1 kHz, instead of on the roboRIO.
+ * Instances must be constructed using a {@link Builder} object, which mirrors {@link RioSetpointController.Builder}, so that
+ * a mechanism can be moved between the two by changing which builder it is constructed with.
+ * <p>
+ * Like {@link RioSetpointController}, output overrides last until the next setpoint, the output is overridden to 0 when
+ * the robot is disabled, and the mechanism is not driven into a pressed limit switch. Since the onboard output cannot be
+ * clamped directly, it is checked once per cycle by the {@link ControlLoop}, and if it drives into a pressed switch, the
+ * SparkMax is told to hold its current position instead.
+ * <p>
+ * The closed loop is only enabled once the gains have been sent to the SparkMax. Until then, setpoints are kept and the
+ * motor stays stopped.
+ */
 public class SparkMaxPID extends SetpointController {
 
-    private ControlType controlType;
+    private ControlType controlType = ControlType.kPosition;
     private SparkMax motor;
     private double setpoint;
-    private double errorTolerance;
+    private double errorTolerance = 0.05;
+
+    private boolean overridden = true;
+    private boolean wasDisabled = false;
+
+    // The configuration sent by the builder, which must be applied before the closed loop is enabled.
+    private CompletableFuture<REVLibError> configured;
+    private boolean referencePending = false;
+    private boolean reportedConfigurationFailure = false;
+
+    private final SensorSnapshot position = new SensorSnapshot(() -> motor.getEncoder().getPosition());
+
+    private RecorderChannel recorder;
+
+    private SparkMaxPID() {}
+
+    private void initialize() {
+        ControlLoop.register(new ControlLoop.Member() {
+            @Override
+            public void calculate() {
+                // The SparkMax stops on its own while disabled, but it would resume its last reference once enabled.
+                var disabled = DriverStation.isDisabled();
+                if (disabled && !wasDisabled) {
+                    overrideOutput(0);
+                }
+                wasDisabled = disabled;
+            }
+
+            @Override
+            public void output() {
+                if (referencePending) {
+                    sendReference();
+                }
+
+                // The setpoint is kept from going past a pressed limit switch, but the SparkMax can still drive into it,
+                // such as while MAXMotion decelerates, so it holds its position instead, without overriding the output.
+                if (!overridden) {
+                    var appliedOutput = motor.getAppliedOutput();
+                    if (appliedOutput != 0 && clampToLimitSwitches(appliedOutput) == 0) {
+                        holdPosition();
+                    }
+                }
+
+                if (recorder != null) {
+                    recorder.record(RobotController.getFPGATime(), setpoint, position.getAsDouble(), motor.getAppliedOutput());
+                }
+            }
+        });
+
+        overrideOutput(0);
+    }
 
     @Override
     public double getSetpoint() {
@@ -17,28 +97,206 @@ public class SparkMaxPID extends SetpointController {
 
     @Override
     public void setSetpoint(double setpoint) {
+        // Limit switches keep setting the same setpoint while they are pressed, which does not need to be sent again.
+        if (!overridden && setpoint == this.setpoint) return;
+
+        overridden = false;
         this.setpoint = setpoint;
+        sendReference();
+    }
+
+    /**
+     * Sends the setpoint to the SparkMax, or waits until its gains are configured to do so, since the closed loop must not
+     * run with the gains it had before.
+     */
+    private void sendReference() {
+        if (!configured.isDone()) {
+            referencePending = true;
+            return;
+        }
+        referencePending = false;
+
+        if (configured.join() != REVLibError.kOk) {
+            if (!reportedConfigurationFailure) {
+                reportedConfigurationFailure = true;
+                DriverStation.reportError("The gains of the SparkMax with CAN ID " + motor.getDeviceId()
+                    + " could not be configured, so its closed loop is not enabled!", false);
+            }
+            return;
+        }
         motor.getClosedLoopController().setReference(setpoint, controlType);
     }
 
+    /**
+     * Holds the current position, with a position loop rather than a new MAXMotion profile, which would overshoot.
+     */
+    private void holdPosition() {
+        setpoint = position.getAsDouble();
+        var closedLoop = motor.getClosedLoopController();
+        closedLoop.setIAccum(0);
+        closedLoop.setReference(setpoint, ControlType.kPosition);
+    }
+
     @Override
     public boolean atSetpoint() {
-        return Math.abs(motor.getEncoder().getPosition() - setpoint) < errorTolerance;
+        return Math.abs(position.getAsDouble() - setpoint) < errorTolerance;
     }
 
     @Override
     public double getCurrentPosition() {
-        return motor.getEncoder().getPosition();
+        return position.getAsDouble();
+    }
+
+    @Override
+    public boolean isProfiled() {
+        return controlType == ControlType.kMAXMotionPositionControl;
     }
 
     @Override
     public void resetPosition() {
         motor.getEncoder().setPosition(0);
+        position.invalidate();
     }
 
     @Override
     public void overrideOutput(double speed) {
-        motor.getClosedLoopController().setReference(Math.min(Math.max(speed, -1), 1), ControlType.kDutyCycle);
+        overridden = true;
+        referencePending = false;
+        var clampedSpeed = clampToLimitSwitches(Math.min(Math.max(speed, -1), 1), true);
+        motor.getClosedLoopController().setReference(clampedSpeed, ControlType.kDutyCycle);
+    }
+
+    /**
+     * Records the setpoint, position and applied output of this controller every cycle, with the default {@link ControlRecorder}.
+     * Equivalent to {@link Builder#withRecorder(String, int)}, for controllers which are already built.
+     * @param name The name of this controller in the log.
+     * @param capacity The number of samples buffered before they are written to the log. Samples recorded while the
+     * buffer is full are dropped.
+     * @return This controller for method chaining.
+     */
+    public SparkMaxPID withRecorder(String name, int capacity) {
+        if (recorder != null) {
+            throw new IllegalStateException("This controller is already being recorded!");
+        }
+        recorder = ControlRecorder.getDefault().createChannel(name, capacity);
+        return this;
+    }
+
+    // --- Builder Pattern ---
+
+    public static class Builder {
+
+        private SparkMaxPID product;
+        private SparkMaxController controller;
+        private SparkMaxConfig config = new SparkMaxConfig();
+        private Constraints constraints;
+        private double positionConversionFactor = 1;
+        private double velocityConversionFactor = 1;
+        private boolean finished = false;
+
+        /**
+         * Creates a builder for a controller running on this SparkMax. The SparkMax should not also be driven
+         * with {@link SparkMaxController#setSpeed(double)}.
+         * @param controller The SparkMax which drives the mechanism, and whose encoder measures its position.
+         */
+        public Builder(SparkMaxController controller) {
+            this.controller = controller;
+            product = new SparkMaxPID();
+            product.motor = controller.getSparkMax();
+        }
+
+        public Builder usingStandardPID(PIDConstants constants) {
+            checkFinished();
+            config.closedLoop.pid(constants.kP, constants.kI, constants.kD).iZone(constants.iZone);
+            product.controlType = ControlType.kPosition;
+            return this;
+        }
+
+        /**
+         * Uses MAXMotion to follow a trapezoidal profile to each setpoint.
+         * @param constraints The maximum velocity and acceleration of the profile, in position units per second (and per
+         * second squared), as for {@link RioSetpointController.Builder#usingProfiledPID(PIDConstants, Constraints)}. They are
+         * converted to the SparkMax's velocity units with the factors given to {@link #withConversionFactors(double, double)}.
+         */
+        public Builder usingProfiledPID(PIDConstants constants, Constraints constraints) {
+            checkFinished();
+            usingStandardPID(constants);
+            this.constraints = constraints;
+            product.controlType = ControlType.kMAXMotionPositionControl;
+            return this;
+        }
+
+        /**
+         * Sets the encoder conversion factors of the SparkMax, which are also sent with the rest of the configuration.
+         * Both default to 1, for positions in rotations and velocities in RPM.
+         * @param positionConversionFactor The position units per rotation of the motor.
+         * @param velocityConversionFactor The velocity units per RPM of the motor.
+         */
+        public Builder withConversionFactors(double positionConversionFactor, double velocityConversionFactor) {
+            checkFinished();
+            if (positionConversionFactor == 0 || velocityConversionFactor == 0) {
+                throw new IllegalArgumentException("Conversion factors cannot be 0!");
+            }
+            this.positionConversionFactor = positionConversionFactor;
+            this.velocityConversionFactor = velocityConversionFactor;
+            config.encoder
+                .positionConversionFactor(positionConversionFactor)
+                .velocityConversionFactor(velocityConversionFactor);
+            return this;
+        }
+
+        /**
+         * Sets how close the position must be to the setpoint for {@link SparkMaxPID#atSetpoint()}. Defaults to 0.05.
+         */
+        public Builder withErrorTolerance(double errorTolerance) {
+            checkFinished();
+            product.errorTolerance = errorTolerance;
+            return this;
+        }
+
+        public Builder withLimitSwitches(LimitSwitch positiveLS, LimitSwitch negativeLS) {
+            checkFinished();
+            product.withLimitSwitches(positiveLS, negativeLS);
+            return this;
+        }
+
+        /**
+         * Records the setpoint, position and applied output of this controller every cycle, with the default {@link ControlRecorder}.
+         * @param name The name of this controller in the log.
+         * @param capacity The number of samples buffered before they are written to the log. Samples recorded while the
+         * buffer is full are dropped.
+         */
+        public Builder withRecorder(String name, int capacity) {
+            checkFinished();
+            product.recorder = ControlRecorder.getDefault().createChannel(name, capacity);
+            return this;
+        }
+
+        private void checkFinished() {
+            if (finished) {
+                throw new IllegalStateException("Product has already been retrieved!");
+            }
+        }
+
+        /**
+         * Retrieves the controller. The gains are sent to the SparkMax in the background, without blocking, and the
+         * closed loop is enabled once they are applied.
+         */
+        public SparkMaxPID retrieveProduct() {
+            finished = true;
+
+            if (constraints != null) {
+                // Position units per second, to rotations per minute, to the SparkMax's velocity units.
+                var toVelocityUnits = 60 / positionConversionFactor * velocityConversionFactor;
+                config.closedLoop.maxMotion
+                    .maxVelocity(constraints.maxVelocity * toVelocityUnits)
+                    .maxAcceleration(constraints.maxAcceleration * toVelocityUnits);
+            }
+
+            // Persisted, so that the SparkMax keeps its gains through a brownout. Unchanged configurations are not rewritten.
+            product.configured = controller.configureAsync(config, ResetMode.kNoResetSafeParameters, PersistMode.kPersistParameters);
+            product.initialize();
+            return product;
+        }
     }
-    
 }
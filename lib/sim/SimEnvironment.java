@@ -0,0 +1,35 @@
+package frc.robot.modules.sim;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+
+/**
+ * Sets up the simulated HAL so that robot code can run headless on a desktop machine, in unit tests, benchmarks and the
+ * {@link SimHarness}.
+ */
+public final class SimEnvironment {
+
+    private static boolean halInitialized = false;
+
+    private SimEnvironment() {}
+
+    /**
+     * Initializes the simulated HAL. Safe to call more than once.
+     */
+    public static synchronized void initializeHAL() {
+        if (halInitialized) return;
+
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the simulated HAL!");
+        }
+        halInitialized = true;
+    }
+
+    /**
+     * Enables or disables the simulated robot. The change is seen by the robot code once it next reads the driver station data.
+     */
+    public static void setEnabled(boolean enabled) {
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+    }
+}
@@ -0,0 +1,113 @@
+package frc.robot.modules.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.modules.ControlLoop;
+
+/**
+ * Runs the robot code and {@link SimMotorController} physics in lockstep, as fast as the CPU allows, so that long
+ * setpoint moves can be simulated headless in a unit test.
+ * <p>
+ * Every step runs the {@link CommandScheduler} and finishes the {@link ControlLoop} pass, as {@code robotPeriodic()}
+ * does, then advances the simulated FPGA clock and every physics model by one period. Controllers running on their own thread are driven by the simulated
+ * clock too, since stepping it fires their notifiers.
+ */
+public class SimHarness {
+
+    private static boolean timingPaused = false;
+
+    private final double period;
+    private final List<SimMotorController> motors = new ArrayList<>();
+    private SimMotorController[] motorArray = new SimMotorController[0];
+
+    private double elapsed = 0;
+
+    /**
+     * Creates a harness, initializing the simulated HAL and pausing the simulated clock if that has not been done yet.
+     * @param periodSeconds The time simulated by each step, usually the robot loop period of 0.02 seconds.
+     */
+    public SimHarness(double periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("The period must be positive!");
+        }
+        period = periodSeconds;
+        pauseTiming();
+    }
+
+    private static synchronized void pauseTiming() {
+        if (timingPaused) return;
+
+        SimEnvironment.initializeHAL();
+        SimHooks.pauseTiming();
+        timingPaused = true;
+    }
+
+    /**
+     * Adds a motor whose physics model is stepped by this harness.
+     * @return This harness for method chaining.
+     */
+    public SimHarness withMotor(SimMotorController motor) {
+        motors.add(motor);
+        motorArray = motors.toArray(new SimMotorController[0]);
+        return this;
+    }
+
+    /**
+     * Enables or disables the simulated robot. The change is seen by the robot code from the next step.
+     */
+    public void setEnabled(boolean enabled) {
+        SimEnvironment.setEnabled(enabled);
+    }
+
+    /**
+     * Runs one cycle of the robot code, then advances time and physics by one period.
+     */
+    public void step() {
+        CommandScheduler.getInstance().run();
+        ControlLoop.finishCycle();
+
+        SimHooks.stepTiming(period);
+        for (var motor : motorArray) {
+            motor.step(period);
+        }
+        elapsed += period;
+    }
+
+    /**
+     * Steps for a duration of simulated time.
+     */
+    public void run(double seconds) {
+        var steps = (long)Math.ceil(seconds / period);
+        for (long i = 0; i < steps; i++) {
+            step();
+        }
+    }
+
+    /**
+     * Steps until a condition is true, or until a duration of simulated time has passed.
+     * @return Whether the condition became true before the timeout.
+     */
+    public boolean runUntil(BooleanSupplier condition, double timeoutSeconds) {
+        var steps = (long)Math.ceil(timeoutSeconds / period);
+        for (long i = 0; i < steps; i++) {
+            if (condition.getAsBoolean()) return true;
+            step();
+        }
+        return condition.getAsBoolean();
+    }
+
+    /**
+     * Gets the simulated time that has passed since this harness was created.
+     */
+    public double getElapsedSeconds() {
+        return elapsed;
+    }
+
+    public double getPeriod() {
+        return period;
+    }
+}
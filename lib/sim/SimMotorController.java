@@ -0,0 +1,133 @@
+package frc.robot.modules.sim;
+
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.ElevatorSim;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
+import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.motors.MotorController;
+
+/**
+ * A {@link MotorController} which drives a WPILib physics model instead of a real motor, with a simulated encoder and
+ * virtual limit switches. The model only moves when it is stepped, usually by a {@link SimHarness}.
+ * <p>
+ * The encoder measures the position of the model in its own units: radians for {@link DCMotorSim} and
+ * {@link SingleJointedArmSim}, and meters for {@link ElevatorSim}.
+ */
+public class SimMotorController extends MotorController {
+
+    /**
+     * The voltage applied to a simulated motor at full speed.
+     */
+    public static final double NOMINAL_VOLTAGE = 12;
+
+    private interface PhysicsModel {
+        public void setInputVoltage(double volts);
+        public void update(double dtSeconds);
+        public double getPosition();
+        public double getVelocity();
+        public double getCurrentDrawAmps();
+    }
+
+    private final PhysicsModel model;
+    private double speed = 0;
+    private double encoderOffset = 0;
+
+    private SimMotorController(PhysicsModel model) {
+        this.model = model;
+    }
+
+    public static SimMotorController fromDCMotorSim(DCMotorSim sim) {
+        return new SimMotorController(new PhysicsModel() {
+            public void setInputVoltage(double volts) { sim.setInputVoltage(volts); }
+            public void update(double dtSeconds) { sim.update(dtSeconds); }
+            public double getPosition() { return sim.getAngularPositionRad(); }
+            public double getVelocity() { return sim.getAngularVelocityRadPerSec(); }
+            public double getCurrentDrawAmps() { return sim.getCurrentDrawAmps(); }
+        });
+    }
+
+    public static SimMotorController fromElevatorSim(ElevatorSim sim) {
+        return new SimMotorController(new PhysicsModel() {
+            public void setInputVoltage(double volts) { sim.setInputVoltage(volts); }
+            public void update(double dtSeconds) { sim.update(dtSeconds); }
+            public double getPosition() { return sim.getPositionMeters(); }
+            public double getVelocity() { return sim.getVelocityMetersPerSecond(); }
+            public double getCurrentDrawAmps() { return sim.getCurrentDrawAmps(); }
+        });
+    }
+
+    public static SimMotorController fromArmSim(SingleJointedArmSim sim) {
+        return new SimMotorController(new PhysicsModel() {
+            public void setInputVoltage(double volts) { sim.setInputVoltage(volts); }
+            public void update(double dtSeconds) { sim.update(dtSeconds); }
+            public double getPosition() { return sim.getAngleRads(); }
+            public double getVelocity() { return sim.getVelocityRadPerSec(); }
+            public double getCurrentDrawAmps() { return sim.getCurrentDrawAmps(); }
+        });
+    }
+
+    @Override
+    public double getSpeed() {
+        return speed;
+    }
+
+    @Override
+    protected void setActualSpeed(double speed) {
+        this.speed = speed;
+        model.setInputVoltage(speed * NOMINAL_VOLTAGE);
+    }
+
+    /**
+     * Advances the physics model, holding the last speed for the whole step.
+     */
+    public void step(double dtSeconds) {
+        model.update(dtSeconds);
+    }
+
+    /**
+     * Gets the position of the mechanism, as measured by the simulated encoder.
+     */
+    public double getEncoderPosition() {
+        return model.getPosition() - encoderOffset;
+    }
+
+    /**
+     * Zeroes the simulated encoder at the current position of the mechanism.
+     */
+    public void resetEncoder() {
+        encoderOffset = model.getPosition();
+    }
+
+    public double getVelocity() {
+        return model.getVelocity();
+    }
+
+    /**
+     * Gets the position of the mechanism in the physics model, which is not affected by {@link #resetEncoder()}.
+     */
+    public double getTruePosition() {
+        return model.getPosition();
+    }
+
+    public double getCurrentDrawAmps() {
+        return model.getCurrentDrawAmps();
+    }
+
+    @Override
+    protected double getMeasuredCurrent() {
+        return Math.abs(model.getCurrentDrawAmps());
+    }
+
+    /**
+     * Creates a limit switch which is pressed while the mechanism is at or past a position in the physics model.
+     * @param position The position at which the switch is pressed.
+     * @param positive Whether the switch is pressed above {@code position}, rather than below it.
+     * @param resetsEncoders Does this limit switch zero/reset encoders when it is pressed?
+     */
+    public LimitSwitch createVirtualLimitSwitch(double position, boolean positive, boolean resetsEncoders) {
+        return new LimitSwitch(
+            () -> positive ? model.getPosition() >= position : model.getPosition() <= position,
+            false,
+            resetsEncoders);
+    }
+}
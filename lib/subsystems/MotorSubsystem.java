@@ -1,12 +1,43 @@
 package frc.robot.modules.subsystems;
 
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.modules.ValueEnum;
 import frc.robot.modules.motors.MotorController;
 
+/**
+ * A generalized class that wraps a {@link MotorController}. Instances must be constructed using a {@link Builder} object.
+ * <p>
+ * The command factories return a new command every time they are called, since a command cannot be scheduled on its own,
+ * or composed again, once it is part of a composition. They are meant to be called when binding commands, not every cycle.
+ * Triggers are reused, and the same trigger is returned every time.
+ */
 public class MotorSubsystem extends SubsystemBase {
     
     MotorController controller;
 
+    private Trigger stoppedTrigger;
+
+    private boolean named = false;
+
+    protected MotorSubsystem() {}
+
+    /**
+     * Sets the name of this subsystem, which is also used to publish the metrics of its controller. Metrics are only
+     * published once a name is set, since the default name (the class name) is shared by every unnamed subsystem.
+     */
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        named = true;
+        if (controller != null) {
+            controller.getMetrics().setName(name);
+        }
+    }
+
     public double getSpeed() {
         return controller.getSpeed();
     }
@@ -15,21 +46,138 @@ public class MotorSubsystem extends SubsystemBase {
         controller.setSpeed(speed);
     }
 
-    public class Builder {
+    public void setSpeed(ValueEnum<Double> speed) {
+        setSpeed(speed.getConstantValue());
+    }
+
+    // --- Commands ---
+
+    /**
+     * Gets a command which runs at a speed while it is scheduled, and stops the subsystem when it ends. The speed is set
+     * every cycle, so that it goes through the controller's output pipeline and power budget each time.
+     */
+    public Command runAt(ValueEnum<Double> speed) {
+        return new RunAtCommand(speed);
+    }
+
+    /**
+     * Gets a command which stops the subsystem, and finishes right away.
+     */
+    public Command stop() {
+        return new StopCommand();
+    }
+
+    /**
+     * Gets a command which drives at a speed from a supplier while it is scheduled, and stops the subsystem when it ends.
+     */
+    public Command manualDrive(DoubleSupplier speed) {
+        return new ManualDriveCommand(speed);
+    }
+
+    /**
+     * Gets a trigger which is true while the controller is stopped, such as after a limit switch stopped it.
+     */
+    public Trigger stoppedTrigger() {
+        if (stoppedTrigger == null) {
+            stoppedTrigger = new Trigger(() -> getSpeed() == 0);
+        }
+        return stoppedTrigger;
+    }
+
+    private class RunAtCommand extends Command {
+        private final double speed;
+
+        private RunAtCommand(ValueEnum<Double> speed) {
+            this.speed = speed.getConstantValue();
+            setName(MotorSubsystem.this.getName() + "Run" + speed);
+            addRequirements(MotorSubsystem.this);
+        }
+
+        @Override
+        public void execute() {
+            setSpeed(speed);
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            setSpeed(0);
+        }
+    }
+
+    private class StopCommand extends Command {
+        private StopCommand() {
+            setName(MotorSubsystem.this.getName() + "Stop");
+            addRequirements(MotorSubsystem.this);
+        }
+
+        @Override
+        public void initialize() {
+            setSpeed(0);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return true;
+        }
+    }
+
+    private class ManualDriveCommand extends Command {
+        private final DoubleSupplier speed;
+
+        private ManualDriveCommand(DoubleSupplier speed) {
+            this.speed = speed;
+            setName(MotorSubsystem.this.getName() + "ManualDrive");
+            addRequirements(MotorSubsystem.this);
+        }
+
+        @Override
+        public void execute() {
+            setSpeed(speed.getAsDouble());
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            setSpeed(0);
+        }
+    }
+
+    // --- Builder Pattern ---
+
+    public static class Builder {
         private MotorSubsystem product;
+        private boolean finished = false;
 
         public Builder() {
             product = new MotorSubsystem();
         }
 
         public Builder withName(String name) {
+            checkFinished();
             product.setName(name);
             return this;
         }
 
         public Builder withMotorController(MotorController controller) {
+            checkFinished();
             product.controller = controller;
+            if (product.named) {
+                controller.getMetrics().setName(product.getName());
+            }
             return this;
         }
+
+        private void checkFinished() {
+            if (finished) {
+                throw new IllegalStateException("Product has already been retrieved!");
+            }
+        }
+
+        public MotorSubsystem retrieveProduct() {
+            if (product.controller == null) {
+                throw new IllegalStateException("A MotorSubsystem needs a MotorController!");
+            }
+            finished = true;
+            return product;
+        }
     }
 }
@@ -1,16 +1,46 @@
 package frc.robot.modules.subsystems;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.robot.modules.ValueEnum;
 import frc.robot.modules.pid.SetpointController;
 
 /**
- * A generalized class that wraps a {@link SetpointController}.
+ * A generalized class that wraps a {@link SetpointController}. Instances must be constructed using a {@link Builder} object.
+ * <p>
+ * The command factories return a new command every time they are called, since a command cannot be scheduled on its own,
+ * or composed again, once it is part of a composition. They are meant to be called when binding commands, not every cycle.
+ * Triggers are reused, and the same trigger is returned every time.
  */
 public class SetpointSubsystem extends SubsystemBase {
 
     protected SetpointController controller;
 
+    private final Map<ValueEnum<Double>, Trigger> atTriggers = new HashMap<>();
+    private Trigger atSetpointTrigger;
+
+    private boolean named = false;
+
+    protected SetpointSubsystem() {}
+
+    /**
+     * Sets the name of this subsystem, which is also used to publish the metrics of its controller. Metrics are only
+     * published once a name is set, since the default name (the class name) is shared by every unnamed subsystem.
+     */
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        named = true;
+        if (controller != null) {
+            controller.getMetrics().setName(name);
+        }
+    }
+
     public void setSetpoint(double setpoint) {
         controller.setSetpoint(setpoint);
     }
@@ -23,6 +53,10 @@ public class SetpointSubsystem extends SubsystemBase {
         return controller.getSetpoint();
     }
 
+    public boolean atSetpoint() {
+        return controller.atSetpoint();
+    }
+
     public void zeroEncoder() {
         controller.resetPosition();
     }
@@ -31,21 +65,145 @@ public class SetpointSubsystem extends SubsystemBase {
         controller.overrideOutput(dutyCycle);
     }
 
-    public class Builder {
+    // --- Commands ---
+
+    /**
+     * Gets a command which moves to a setpoint, and finishes once the controller is at it. The controller keeps
+     * holding the setpoint after the command finishes.
+     */
+    public Command goTo(ValueEnum<Double> setpoint) {
+        return new GoToCommand(setpoint);
+    }
+
+    /**
+     * Gets a command which holds the position this subsystem is at when the command starts. It never finishes.
+     */
+    public Command hold() {
+        return new HoldCommand();
+    }
+
+    /**
+     * Gets a command which overrides the output of the controller with a duty cycle while it is scheduled, and stops the
+     * subsystem when it ends.
+     */
+    public Command manualDrive(DoubleSupplier dutyCycle) {
+        return new ManualDriveCommand(dutyCycle);
+    }
+
+    /**
+     * Gets a trigger which is true while the controller is at its setpoint.
+     */
+    public Trigger atSetpointTrigger() {
+        if (atSetpointTrigger == null) {
+            atSetpointTrigger = new Trigger(this::atSetpoint);
+        }
+        return atSetpointTrigger;
+    }
+
+    /**
+     * Gets a trigger which is true while the controller is at this setpoint.
+     */
+    public Trigger at(ValueEnum<Double> setpoint) {
+        var trigger = atTriggers.get(setpoint);
+        if (trigger == null) {
+            double value = setpoint.getConstantValue();
+            trigger = new Trigger(() -> getSetpoint() == value && atSetpoint());
+            atTriggers.put(setpoint, trigger);
+        }
+        return trigger;
+    }
+
+    private class GoToCommand extends Command {
+        private final double setpoint;
+
+        private GoToCommand(ValueEnum<Double> setpoint) {
+            this.setpoint = setpoint.getConstantValue();
+            setName(SetpointSubsystem.this.getName() + "GoTo" + setpoint);
+            addRequirements(SetpointSubsystem.this);
+        }
+
+        @Override
+        public void initialize() {
+            setSetpoint(setpoint);
+        }
+
+        @Override
+        public boolean isFinished() {
+            // Profiled controllers are only at their setpoint once they reach the goal, not the profile's current state, and
+            // controllers running on their own thread are not at it until that thread has applied it.
+            return atSetpoint();
+        }
+    }
+
+    private class HoldCommand extends Command {
+        private HoldCommand() {
+            setName(SetpointSubsystem.this.getName() + "Hold");
+            addRequirements(SetpointSubsystem.this);
+        }
+
+        @Override
+        public void initialize() {
+            setSetpoint(controller.getCurrentPosition());
+        }
+    }
+
+    private class ManualDriveCommand extends Command {
+        private final DoubleSupplier dutyCycle;
+
+        private ManualDriveCommand(DoubleSupplier dutyCycle) {
+            this.dutyCycle = dutyCycle;
+            setName(SetpointSubsystem.this.getName() + "ManualDrive");
+            addRequirements(SetpointSubsystem.this);
+        }
+
+        @Override
+        public void execute() {
+            manualDrive(dutyCycle.getAsDouble());
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            manualDrive(0);
+        }
+    }
+
+    // --- Builder Pattern ---
+
+    public static class Builder {
         private SetpointSubsystem product;
+        private boolean finished = false;
 
         public Builder() {
             product = new SetpointSubsystem();
         }
 
         public Builder withName(String name) {
+            checkFinished();
             product.setName(name);
             return this;
         }
 
         public Builder withSetpointController(SetpointController controller) {
+            checkFinished();
             product.controller = controller;
+            if (product.named) {
+                controller.getMetrics().setName(product.getName());
+            }
             return this;
         }
+
+        private void checkFinished() {
+            if (finished) {
+                throw new IllegalStateException("Product has already been retrieved!");
+            }
+        }
+
+        public SetpointSubsystem retrieveProduct() {
+            if (product.controller == null) {
+                throw new IllegalStateException("A SetpointSubsystem needs a SetpointController!");
+            }
+            finished = true;
+            return product;
+        }
     }
 }
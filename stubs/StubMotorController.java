@@ -0,0 +1,28 @@
+package frc.robot.modules.stubs;
+
+import frc.robot.modules.motors.MotorController;
+
+/**
+ * A {@link MotorController} that only remembers the last speed written to it, so that benchmarks and tests can run
+ * without any motor controller hardware or vendor libraries. Speeds may be written from interrupt threads, so they are published.
+ */
+public class StubMotorController extends MotorController {
+
+    private volatile double speed;
+    private volatile long writes;
+
+    @Override
+    public double getSpeed() {
+        return speed;
+    }
+
+    @Override
+    protected synchronized void setActualSpeed(double speed) {
+        this.speed = speed;
+        writes++;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+}
@@ -0,0 +1,58 @@
+package frc.robot.modules.stubs;
+
+import frc.robot.modules.pid.SetpointController;
+
+/**
+ * A {@link SetpointController} whose position is set directly, so that benchmarks and tests can run without any sensors.
+ * It counts how many times its setpoint is set.
+ */
+public class StubSetpointController extends SetpointController {
+
+    private double setpoint;
+    private double position;
+    private double output;
+    private int setpointsSet = 0;
+
+    @Override
+    public double getSetpoint() {
+        return setpoint;
+    }
+
+    @Override
+    public void setSetpoint(double setpoint) {
+        this.setpoint = setpoint;
+        setpointsSet++;
+    }
+
+    @Override
+    public boolean atSetpoint() {
+        return Math.abs(setpoint - position) < 1e-3;
+    }
+
+    @Override
+    public double getCurrentPosition() {
+        return position;
+    }
+
+    public void setCurrentPosition(double position) {
+        this.position = position;
+    }
+
+    @Override
+    public void resetPosition() {
+        position = 0;
+    }
+
+    @Override
+    public void overrideOutput(double speed) {
+        output = speed;
+    }
+
+    public double getOutput() {
+        return output;
+    }
+
+    public int getSetpointsSet() {
+        return setpointsSet;
+    }
+}
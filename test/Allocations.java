@@ -0,0 +1,35 @@
+package frc.robot.modules;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Measures how much memory the current thread allocates, for tests of code that runs every cycle.
+ */
+public final class Allocations {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private Allocations() {}
+
+    /**
+     * Runs an action repeatedly, first so that it reaches a steady state and gets compiled, then while counting the
+     * bytes it allocates.
+     * @param action The action to measure.
+     * @param warmupRuns How many times the action is run before measuring.
+     * @param measuredRuns How many times the action is run while measuring.
+     * @return The number of bytes allocated by the measured runs.
+     */
+    public static long measure(Runnable action, int warmupRuns, int measuredRuns) {
+        for (int i = 0; i < warmupRuns; i++) {
+            action.run();
+        }
+
+        var before = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < measuredRuns; i++) {
+            action.run();
+        }
+        return THREADS.getCurrentThreadAllocatedBytes() - before;
+    }
+}
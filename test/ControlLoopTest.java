@@ -0,0 +1,151 @@
+package frc.robot.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import frc.robot.modules.sim.SimEnvironment;
+
+
+/**
+ * Tests the time budget of the {@link ControlLoop}. Members cannot be unregistered, so every test shares one slow member,
+ * which is only slow while a test needs it to be, and tests only look at the members they registered themselves.
+ */
+class ControlLoopTest {
+
+    /**
+     * A member which counts how many times each of its methods is called.
+     */
+    private static class CountingMember implements ControlLoop.Member {
+        private int sensed, calculated, written, skipped;
+
+        @Override
+        public void sense() {
+            sensed++;
+        }
+
+        @Override
+        public void calculate() {
+            calculated++;
+        }
+
+        @Override
+        public void output() {
+            written++;
+        }
+
+        @Override
+        public void onSkipped() {
+            skipped++;
+        }
+    }
+
+    /**
+     * A critical member whose calculations take 10 ms while it is slow.
+     */
+    private static class SlowMember implements ControlLoop.Member {
+        private boolean slow = false;
+
+        @Override
+        public void calculate() {
+            if (!slow) return;
+
+            var end = System.nanoTime() + 10_000_000;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static final SlowMember slowMember = new SlowMember();
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        ControlLoop.register(slowMember);
+    }
+
+    @AfterEach
+    void stopBeingSlow() {
+        slowMember.slow = false;
+    }
+
+    private static void recover() {
+        for (var i = 0; i <= ControlLoop.DEGRADED_CYCLES && ControlLoop.isDegraded(); i++) {
+            ControlLoop.run();
+        }
+        assertFalse(ControlLoop.isDegraded());
+    }
+
+    @Test
+    void skipsLowerPrioritiesOnceTheBudgetRunsOutMidPass() {
+        ControlLoop.setTimeBudget(0.001);
+        recover();
+
+        var critical = new CountingMember();
+        var normal = new CountingMember();
+        ControlLoop.register(critical);
+        ControlLoop.register(normal, ControlLoop.Priority.NORMAL);
+        var skippedBefore = ControlLoop.getSkippedUpdates(ControlLoop.Priority.NORMAL);
+
+        slowMember.slow = true;
+        ControlLoop.run();
+
+        // The budget only ran out during the calculate phase, after every member had read its sensors.
+        assertEquals(1, normal.sensed);
+        assertEquals(0, normal.calculated);
+        assertEquals(0, normal.written);
+        assertEquals(1, normal.skipped);
+        assertEquals(skippedBefore + 1, ControlLoop.getSkippedUpdates(ControlLoop.Priority.NORMAL));
+
+        assertEquals(1, critical.calculated);
+        assertEquals(1, critical.written);
+        assertTrue(ControlLoop.isDegraded());
+    }
+
+    @Test
+    void decimatesLowerPrioritiesUntilItRecovers() {
+        // Generous enough that the passes which are not slowed down never go over it.
+        ControlLoop.setTimeBudget(0.005);
+        recover();
+
+        var critical = new CountingMember();
+        var normal = new CountingMember();
+        var bestEffort = new CountingMember();
+        ControlLoop.register(critical);
+        ControlLoop.register(normal, ControlLoop.Priority.NORMAL);
+        ControlLoop.register(bestEffort, ControlLoop.Priority.BEST_EFFORT);
+
+        slowMember.slow = true;
+        ControlLoop.run();
+        slowMember.slow = false;
+        assertTrue(ControlLoop.isDegraded());
+        assertEquals(1, normal.skipped);
+        assertEquals(1, bestEffort.skipped);
+
+        // Every member is staggered, so over the degraded cycles each one is updated every 2nd or 4th cycle.
+        for (var i = 0; i < ControlLoop.DEGRADED_CYCLES; i++) {
+            assertTrue(ControlLoop.isDegraded());
+            ControlLoop.run();
+        }
+        assertFalse(ControlLoop.isDegraded());
+
+        assertEquals(1 + ControlLoop.DEGRADED_CYCLES, critical.calculated);
+        assertTrue(normal.calculated == 12 || normal.calculated == 13, "NORMAL updated " + normal.calculated + " times");
+        assertTrue(bestEffort.calculated == 6 || bestEffort.calculated == 7, "BEST_EFFORT updated " + bestEffort.calculated + " times");
+        assertEquals(1 + ControlLoop.DEGRADED_CYCLES, normal.calculated + normal.skipped);
+        assertEquals(1 + ControlLoop.DEGRADED_CYCLES, bestEffort.calculated + bestEffort.skipped);
+        assertEquals(normal.calculated, normal.written);
+
+        // Recovered, so every member is updated again.
+        var normalUpdates = normal.calculated;
+        var bestEffortUpdates = bestEffort.calculated;
+        ControlLoop.run();
+        assertEquals(normalUpdates + 1, normal.calculated);
+        assertEquals(bestEffortUpdates + 1, bestEffort.calculated);
+    }
+}
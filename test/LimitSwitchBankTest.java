@@ -0,0 +1,54 @@
+package frc.robot.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import frc.robot.modules.sim.SimEnvironment;
+
+class LimitSwitchBankTest {
+
+    private static class Mechanism {
+        // Created before the input it reads, like a switch declared above the DIO it is wired to.
+        private final LimitSwitch limitSwitch = new LimitSwitch(() -> this.input[0], false, false);
+        private final boolean[] input = {true};
+    }
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+    }
+
+    @Test
+    void readsInputsOnlyWhenPolled() {
+        var mechanism = new Mechanism();
+
+        assertFalse(mechanism.limitSwitch.isPressed());
+        assertTrue(mechanism.limitSwitch.readPressed());
+
+        LimitSwitchBank.getDefault().poll();
+        assertTrue(mechanism.limitSwitch.isPressed());
+    }
+
+    @Test
+    void firstPollIsNotAnEdge() {
+        var input = new boolean[] {true};
+        var limitSwitch = new LimitSwitch(() -> input[0], false, false);
+        var edges = new AtomicInteger();
+        limitSwitch.addListener(pressed -> edges.incrementAndGet());
+
+        LimitSwitchBank.getDefault().poll();
+        assertTrue(limitSwitch.isPressed());
+        assertEquals(0, edges.get());
+
+        input[0] = false;
+        LimitSwitchBank.getDefault().poll();
+        assertFalse(limitSwitch.isPressed());
+        assertEquals(1, edges.get());
+    }
+}
@@ -0,0 +1,99 @@
+package frc.robot.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.stubs.StubMotorController;
+
+/**
+ * Tests {@link LimitSwitch#fromInterrupt(DigitalInput, boolean, boolean, double)} with simulated DIOs. The scheduler is
+ * never run, so everything that happens does so from the interrupt thread. The simulated clock is paused, so that
+ * debouncing only depends on how far it is stepped.
+ */
+class LimitSwitchInterruptTest {
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimHooks.pauseTiming();
+    }
+
+    @Test
+    void stopsTheMotorFromTheInterruptThread() throws InterruptedException {
+        var input = new DigitalInput(0);
+        var dio = new DIOSim(input);
+        dio.setValue(false);
+
+        var limitSwitch = LimitSwitch.fromInterrupt(input, false, false, 0);
+        var motor = new StubMotorController();
+        motor.withLimitSwitches(limitSwitch, null);
+
+        motor.setSpeed(0.5);
+        assertEquals(0.5, motor.getSpeed());
+
+        dio.setValue(true);
+        assertTrue(waitFor(() -> motor.getSpeed() == 0));
+        assertTrue(limitSwitch.isPressed());
+        assertTrue(limitSwitch.getLastEdgeTimestamp() > Double.NEGATIVE_INFINITY);
+
+        // While the switch is held, the motor may only move away from it.
+        motor.setSpeed(0.5);
+        assertEquals(0, motor.getSpeed());
+        motor.setSpeed(-0.5);
+        assertEquals(-0.5, motor.getSpeed());
+
+        dio.setValue(false);
+        assertTrue(waitFor(() -> !limitSwitch.isPressed()));
+        motor.setSpeed(0.5);
+        assertEquals(0.5, motor.getSpeed());
+    }
+
+    @Test
+    void ignoresEdgesWithinTheDebounce() throws InterruptedException {
+        var input = new DigitalInput(1);
+        var dio = new DIOSim(input);
+        dio.setValue(false);
+
+        var limitSwitch = LimitSwitch.fromInterrupt(input, false, false, 0.1);
+        var changes = new AtomicInteger();
+        limitSwitch.addListener(pressed -> changes.incrementAndGet());
+
+        dio.setValue(true);
+        assertTrue(waitFor(() -> changes.get() == 1));
+        assertTrue(limitSwitch.isPressed());
+        var pressedAt = limitSwitch.getLastEdgeTimestamp();
+
+        // A bounce, which happens at the same simulated time as the press.
+        dio.setValue(false);
+        Thread.sleep(50);
+        assertTrue(limitSwitch.isPressed());
+        assertEquals(pressedAt, limitSwitch.getLastEdgeTimestamp());
+
+        // Once the input has settled for the debounce, the switch catches up with it.
+        SimHooks.stepTiming(0.1);
+        assertFalse(limitSwitch.isPressed());
+        assertEquals(2, changes.get());
+    }
+
+    /**
+     * Waits for something to happen on the interrupt thread, for up to a second.
+     */
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            if (condition.getAsBoolean()) return true;
+            Thread.sleep(1);
+        }
+        return condition.getAsBoolean();
+    }
+}
@@ -0,0 +1,59 @@
+package frc.robot.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.robot.modules.sim.SimEnvironment;
+
+class SensorSnapshotTest {
+
+    // A stub encoder, which counts how many times it is read, and returns that count as its position.
+    private int encoderReads = 0;
+    private SensorSnapshot snapshot;
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        ControlLoop.install();
+    }
+
+    @Test
+    void readsTheSensorOncePerCycle() {
+        var seen = new double[2];
+
+        // One subsystem is registered before the snapshot is created, and one after, and neither may see a stale reading.
+        CommandScheduler.getInstance().registerSubsystem(new Subsystem() {
+            @Override
+            public void periodic() {
+                seen[0] = snapshot.getAsDouble();
+            }
+        });
+        snapshot = new SensorSnapshot(() -> ++encoderReads);
+        CommandScheduler.getInstance().registerSubsystem(new Subsystem() {
+            @Override
+            public void periodic() {
+                // Reading twice in one cycle must not read the encoder twice.
+                snapshot.getAsDouble();
+                seen[1] = snapshot.getAsDouble();
+            }
+        });
+
+        for (int cycle = 1; cycle <= 10; cycle++) {
+            CommandScheduler.getInstance().run();
+
+            assertEquals(cycle, encoderReads);
+            assertEquals(cycle, seen[0]);
+            assertEquals(cycle, seen[1]);
+        }
+        assertEquals(10, snapshot.getReads());
+
+        snapshot.invalidate();
+        assertEquals(11, snapshot.getAsDouble());
+        assertEquals(11, snapshot.getAsDouble());
+        assertEquals(11, encoderReads);
+    }
+}
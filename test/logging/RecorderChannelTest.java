@@ -0,0 +1,139 @@
+package frc.robot.modules.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogWriter;
+
+/**
+ * Tests {@link RecorderChannel} and {@link ControlRecorder} by draining channels into a log file and reading it back.
+ * The recorders flush too rarely to drain on their own during a test, so the channels are drained directly.
+ */
+class RecorderChannelTest {
+
+    private record Sample(long timestamp, double value) {}
+
+    @TempDir
+    File directory;
+
+    private ControlRecorder createRecorder(DataLogWriter log) {
+        return new ControlRecorder(log, 3600);
+    }
+
+    private static Map<String, List<Sample>> read(File file) throws IOException {
+        var names = new HashMap<Integer, String>();
+        var entries = new HashMap<String, List<Sample>>();
+
+        for (var record : new DataLogReader(file.getPath())) {
+            if (record.isStart()) {
+                var start = record.getStartData();
+                names.put(start.entry, start.name);
+                entries.put(start.name, new ArrayList<>());
+                continue;
+            }
+            if (record.isControl()) continue;
+
+            var name = names.get(record.getEntry());
+            var value = name.endsWith("/flags") ? record.getInteger() : record.getDouble();
+            entries.get(name).add(new Sample(record.getTimestamp(), value));
+        }
+        return entries;
+    }
+
+    @Test
+    void wrapsAroundTheBuffer() throws IOException {
+        var file = new File(directory, "wrap.wpilog");
+        var log = new DataLogWriter(file.getPath());
+        var channel = createRecorder(log).createChannel("arm", 4);
+
+        // Three samples, then three more which wrap past the end of the buffer.
+        for (var i = 1; i <= 3; i++) {
+            channel.record(i, i, 10 * i, 0.1 * i);
+        }
+        assertEquals(3, channel.drainTo(log));
+        for (var i = 4; i <= 6; i++) {
+            channel.record(i, i, 10 * i, 0.1 * i);
+        }
+        assertEquals(3, channel.drainTo(log));
+        log.close();
+
+        var positions = read(file).get("arm/position");
+        assertEquals(6, positions.size());
+        for (var i = 0; i < 6; i++) {
+            assertEquals(i + 1, positions.get(i).timestamp());
+            assertEquals(10 * (i + 1), positions.get(i).value(), 1e-9);
+        }
+        assertEquals(0, channel.getDroppedSamples());
+    }
+
+    @Test
+    void dropsAndCountsSamplesWhenFull() throws IOException {
+        var file = new File(directory, "drops.wpilog");
+        var log = new DataLogWriter(file.getPath());
+        var recorder = createRecorder(log);
+        var arm = recorder.createChannel("arm", 3);
+        var wrist = recorder.createChannel("wrist", 2);
+
+        // The capacity is rounded up to 4, so the last 2 samples do not fit.
+        assertEquals(4, arm.getCapacity());
+        for (var i = 1; i <= 6; i++) {
+            arm.record(i, 0, i, 0);
+        }
+        for (var i = 1; i <= 3; i++) {
+            wrist.record(i, 0, i, 0);
+        }
+
+        assertEquals(2, arm.getDroppedSamples());
+        assertEquals(1, wrist.getDroppedSamples());
+        assertEquals(3, recorder.getDroppedSamples());
+        assertEquals(4, arm.getRecordedSamples());
+
+        // Once drained, there is room again.
+        assertEquals(4, arm.drainTo(log));
+        arm.record(7, 0, 7, 0);
+        assertEquals(2, arm.getDroppedSamples());
+        assertEquals(1, arm.drainTo(log));
+        log.close();
+
+        var positions = read(file).get("arm/position");
+        assertEquals(5, positions.size());
+        assertEquals(4, positions.get(3).timestamp());
+        assertEquals(7, positions.get(4).timestamp());
+    }
+
+    @Test
+    void logsFlagsFromTheFirstSampleRecordedWithThem() throws IOException {
+        var file = new File(directory, "flags.wpilog");
+        var log = new DataLogWriter(file.getPath());
+        var recorder = createRecorder(log);
+        var arm = recorder.createChannel("arm", 8);
+        var wrist = recorder.createChannel("wrist", 8);
+
+        arm.record(1, 0, 0, 0);
+        wrist.record(1, 0, 0, 0);
+        arm.drainTo(log);
+        wrist.drainTo(log);
+
+        // After a sample with flags, every sample's flags are logged, including the ones recorded without them.
+        arm.record(2, 0, 0, 0, 5);
+        arm.record(3, 0, 0, 0);
+        arm.drainTo(log);
+        log.close();
+
+        var entries = read(file);
+        assertFalse(entries.containsKey("wrist/flags"));
+        assertEquals(List.of(new Sample(2, 5), new Sample(3, 0)), entries.get("arm/flags"));
+        assertEquals(3, entries.get("arm/setpoint").size());
+    }
+}
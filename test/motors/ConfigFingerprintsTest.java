@@ -0,0 +1,74 @@
+package frc.robot.modules.motors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.revrobotics.REVLibError;
+
+class ConfigFingerprintsTest {
+
+    @TempDir
+    File directory;
+
+    // Each record stands for one boot of the robot.
+    private ConfigFingerprints boot() {
+        return new ConfigFingerprints(new File(directory, "fingerprints.properties"));
+    }
+
+    private void configure(ConfigFingerprints fingerprints, int canId, String fingerprint, REVLibError status) {
+        if (fingerprints.mustSend(canId, fingerprint)) {
+            fingerprints.onConfigured(canId, fingerprint, status);
+        }
+    }
+
+    @Test
+    void skipsAMatchingConfigurationAfterABoot() {
+        configure(boot(), 1, "a", REVLibError.kOk);
+
+        assertFalse(boot().mustSend(1, "a"));
+    }
+
+    @Test
+    void sendsAConfigurationWhichDoesNotMatch() {
+        configure(boot(), 1, "a", REVLibError.kOk);
+
+        assertTrue(boot().mustSend(1, "b"));
+        assertTrue(boot().mustSend(2, "a"));
+    }
+
+    @Test
+    void forgetsADeviceWhenAConfigurationFails() {
+        var fingerprints = boot();
+        configure(fingerprints, 1, "a", REVLibError.kOk);
+        fingerprints.onConfigured(1, "b", REVLibError.kTimeout);
+
+        assertTrue(boot().mustSend(1, "a"));
+        assertTrue(boot().mustSend(1, "b"));
+    }
+
+    @Test
+    void sendsAPersistedConfigurationAfterOneWhichIsNotPersisted() {
+        configure(boot(), 1, "a", REVLibError.kOk);
+
+        // The first configuration matches, but the device's settings then change without being persisted.
+        var fingerprints = boot();
+        assertFalse(fingerprints.mustSend(1, "a"));
+        assertTrue(fingerprints.mustSend(1, null));
+        assertTrue(fingerprints.mustSend(1, "a"));
+        fingerprints.onConfigured(1, "a", REVLibError.kOk);
+
+        assertFalse(boot().mustSend(1, "a"));
+    }
+
+    @Test
+    void alwaysSendsAConfigurationWhichIsNotPersisted() {
+        configure(boot(), 1, "a", REVLibError.kOk);
+
+        assertTrue(boot().mustSend(1, null));
+    }
+}
@@ -0,0 +1,84 @@
+package frc.robot.modules.motors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.revrobotics.REVLibError;
+import com.revrobotics.spark.SparkBase.PersistMode;
+import com.revrobotics.spark.SparkBase.ResetMode;
+import com.revrobotics.spark.config.SparkMaxConfig;
+
+class ConfigurationQueueTest {
+
+    private final ConfigurationQueue queue = new ConfigurationQueue(3, 0.001);
+    private final SparkMaxConfig config = new SparkMaxConfig();
+
+    @Test
+    void retriesUntilTheDeviceAcknowledges() throws Exception {
+        var attempts = new AtomicInteger();
+        ConfigurableDevice device = (config, resetMode, persistMode) ->
+            (attempts.incrementAndGet() < 3) ? REVLibError.kTimeout : REVLibError.kOk;
+
+        var result = queue.submit(device, config, ResetMode.kNoResetSafeParameters, PersistMode.kPersistParameters);
+
+        assertEquals(REVLibError.kOk, result.get(1, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void givesUpWithTheLastError() throws Exception {
+        var attempts = new AtomicInteger();
+        ConfigurableDevice device = (config, resetMode, persistMode) -> {
+            attempts.incrementAndGet();
+            return REVLibError.kCANDisconnected;
+        };
+
+        var result = queue.submit(device, config, ResetMode.kNoResetSafeParameters, PersistMode.kPersistParameters);
+
+        assertEquals(REVLibError.kCANDisconnected, result.get(1, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void appliesConfigurationsInOrder() throws Exception {
+        List<String> applied = new CopyOnWriteArrayList<>();
+        var failedOnce = new AtomicInteger();
+
+        // The first device fails once, which must not let the second one overtake it.
+        ConfigurableDevice first = (config, resetMode, persistMode) -> {
+            if (failedOnce.getAndIncrement() == 0) return REVLibError.kTimeout;
+            applied.add("first");
+            return REVLibError.kOk;
+        };
+        ConfigurableDevice second = (config, resetMode, persistMode) -> {
+            applied.add("second");
+            return REVLibError.kOk;
+        };
+
+        queue.submit(first, config, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+        var result = queue.submit(second, config, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+
+        assertEquals(REVLibError.kOk, result.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "second"), applied);
+    }
+
+    @Test
+    void reportsExceptionsThroughTheFuture() {
+        ConfigurableDevice device = (config, resetMode, persistMode) -> {
+            throw new IllegalStateException("Device unplugged!");
+        };
+
+        var result = queue.submit(device, config, ResetMode.kNoResetSafeParameters, PersistMode.kPersistParameters);
+
+        var exception = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertEquals(IllegalStateException.class, exception.getCause().getClass());
+    }
+}
@@ -0,0 +1,60 @@
+package frc.robot.modules.motors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.modules.stubs.StubMotorController;
+
+class MotorControllerTest {
+
+    /**
+     * Creates a stub which adds itself to a list every time it is written to.
+     */
+    private static StubMotorController createRecorded(List<MotorController> writes) {
+        return new StubMotorController() {
+            @Override
+            protected synchronized void setActualSpeed(double speed) {
+                super.setActualSpeed(speed);
+                writes.add(this);
+            }
+        };
+    }
+
+    @Test
+    void followersAreUpdatedDepthFirstWithTheirSigns() {
+        var writes = new ArrayList<MotorController>();
+        var leader = createRecorded(writes);
+        var left = createRecorded(writes);
+        var leftChild = createRecorded(writes);
+        var right = createRecorded(writes);
+
+        left.follow(leader, true);
+        right.follow(leader, false);
+        // Followed after right, but still updated right after its own leader.
+        leftChild.follow(left, true);
+
+        leader.setSpeed(0.5);
+
+        assertEquals(List.of(leader, left, leftChild, right), writes);
+        assertEquals(-0.5, left.getSpeed());
+        assertEquals(0.5, leftChild.getSpeed());
+        assertEquals(0.5, right.getSpeed());
+    }
+
+    @Test
+    void followCyclesAreRejected() {
+        var first = new StubMotorController();
+        var second = new StubMotorController();
+        var third = new StubMotorController();
+        second.follow(first, false);
+        third.follow(second, false);
+
+        assertThrows(IllegalArgumentException.class, () -> first.follow(third, false));
+        assertThrows(IllegalArgumentException.class, () -> first.follow(first, false));
+    }
+}
@@ -0,0 +1,61 @@
+package frc.robot.modules.motors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.modules.LimitSwitchBank;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.stubs.StubMotorController;
+
+class OutputPipelineTest {
+
+    private boolean pressed = false;
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimHooks.pauseTiming();
+    }
+
+    @Test
+    void followersAreNotShapedAgain() {
+        var leader = new StubMotorController();
+        var follower = new StubMotorController();
+        leader.withOutputPipeline(new OutputPipeline.Builder().scale(0.5).retrieveProduct());
+        follower.withOutputPipeline(new OutputPipeline.Builder().scale(0.5).retrieveProduct());
+        follower.follow(leader, false);
+
+        leader.setSpeed(1);
+
+        assertEquals(0.5, leader.getSpeed(), 1e-9);
+        assertEquals(0.5, follower.getSpeed(), 1e-9);
+    }
+
+    @Test
+    void slewRateRampsFromTheWrittenSpeed() {
+        var motor = new StubMotorController();
+        motor.withOutputPipeline(new OutputPipeline.Builder().slewRate(1).retrieveProduct());
+        motor.withLimitSwitches(() -> pressed, null);
+
+        for (var i = 0; i < 50; i++) {
+            motor.setSpeed(1);
+            SimHooks.stepTiming(0.02);
+        }
+        assertEquals(1, motor.getSpeed(), 1e-9);
+
+        // Stopped by the switch, so once it is released the speed ramps up from 0 again.
+        pressed = true;
+        LimitSwitchBank.getDefault().poll();
+        motor.setSpeed(1);
+        assertEquals(0, motor.getSpeed());
+
+        pressed = false;
+        LimitSwitchBank.getDefault().poll();
+        SimHooks.stepTiming(0.02);
+        motor.setSpeed(1);
+        assertEquals(0.02, motor.getSpeed(), 1e-9);
+    }
+}
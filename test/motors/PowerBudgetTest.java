@@ -0,0 +1,96 @@
+package frc.robot.modules.motors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.stubs.StubMotorController;
+
+class PowerBudgetTest {
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+    }
+
+    @AfterEach
+    void restoreBatteryVoltage() {
+        RoboRioSim.setVInVoltage(12);
+    }
+
+    @Test
+    void speedsSetByCommandsAreWrittenInTheSameCycle() {
+        var motor = new StubMotorController();
+        new PowerBudget(0.02, 7).add(motor, ControlLoop.Priority.CRITICAL, 105);
+        ControlLoop.finishCycle();
+
+        CommandScheduler.getInstance().run();
+        // As a command would, after the scheduler has run the sense phase.
+        motor.setSpeed(0.5);
+        assertEquals(0, motor.getSpeed());
+
+        ControlLoop.finishCycle();
+        assertEquals(0.5, motor.getSpeed());
+    }
+
+    @Test
+    void motorsDrivenFasterThanTheBudgetCannotBeBudgeted() {
+        var budget = new PowerBudget(0.02, 7);
+
+        var fast = new StubMotorController();
+        fast.disallowPowerBudget();
+        assertThrows(IllegalArgumentException.class, () -> budget.add(fast, ControlLoop.Priority.CRITICAL, 105));
+
+        var budgeted = new StubMotorController();
+        budget.add(budgeted, ControlLoop.Priority.CRITICAL, 105);
+        assertThrows(IllegalArgumentException.class, budgeted::disallowPowerBudget);
+    }
+
+    @Test
+    void lowerPrioritiesAreScaledFirstUnderASaggingVoltage() {
+        var critical = new StubMotorController();
+        var bestEffort = new StubMotorController();
+        var budget = new PowerBudget(0.02, 7)
+            .add(critical, ControlLoop.Priority.CRITICAL, 100)
+            .add(bestEffort, ControlLoop.Priority.BEST_EFFORT, 100);
+
+        // 2.5 volts above the minimum allows 125 amps, so 75 of the 100 amps the lower priority asks for are taken off.
+        RoboRioSim.setVInVoltage(9.5);
+        critical.setSpeed(1);
+        bestEffort.setSpeed(1);
+        ControlLoop.run();
+
+        assertEquals(125, budget.getBudgetCurrent(), 1e-9);
+        assertEquals(1, critical.getSpeed(), 1e-9);
+        assertEquals(0.25, bestEffort.getSpeed(), 1e-9);
+        assertEquals(1, budget.getScale(ControlLoop.Priority.CRITICAL), 1e-9);
+        assertEquals(0.25, budget.getScale(ControlLoop.Priority.BEST_EFFORT), 1e-9);
+        assertEquals(125, budget.getPredictedCurrent(), 1e-9);
+    }
+
+    @Test
+    void higherPrioritiesAreOnlyScaledOnceTheLowerOnesAreStopped() {
+        var critical = new StubMotorController();
+        var normal = new StubMotorController();
+        var budget = new PowerBudget(0.02, 7)
+            .add(critical, ControlLoop.Priority.CRITICAL, 100)
+            .add(normal, ControlLoop.Priority.NORMAL, 100);
+
+        // 1.5 volts above the minimum only allows 75 amps.
+        RoboRioSim.setVInVoltage(8.5);
+        critical.setSpeed(1);
+        normal.setSpeed(-1);
+        ControlLoop.run();
+
+        assertEquals(0, normal.getSpeed(), 1e-9);
+        assertEquals(0.75, critical.getSpeed(), 1e-9);
+        assertEquals(1, budget.getScaledCycles());
+    }
+}
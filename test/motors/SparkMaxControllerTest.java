@@ -0,0 +1,51 @@
+package frc.robot.modules.motors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.revrobotics.spark.SparkLowLevel.MotorType;
+
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.modules.sim.SimEnvironment;
+
+class SparkMaxControllerTest {
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimHooks.pauseTiming();
+    }
+
+    @Test
+    void everyWriteIsSentByDefault() {
+        var motor = new SparkMaxController(1, MotorType.kBrushless);
+
+        motor.setSpeed(0.5);
+        motor.setSpeed(0.5);
+
+        assertEquals(2, motor.getIssuedWrites());
+        assertEquals(0, motor.getSuppressedWrites());
+    }
+
+    @Test
+    void unchangedSpeedsAreSuppressedUntilTheKeepAlive() {
+        var motor = new SparkMaxController(2, MotorType.kBrushless).withWriteSuppression(0.01, 0.1);
+
+        motor.setSpeed(0.5);
+        motor.setSpeed(0.5);
+        motor.setSpeed(0.505);
+        assertEquals(1, motor.getIssuedWrites());
+        assertEquals(2, motor.getSuppressedWrites());
+
+        SimHooks.stepTiming(0.1);
+        motor.setSpeed(0.5);
+        assertEquals(2, motor.getIssuedWrites());
+
+        // Stopping is never suppressed, even within the epsilon.
+        motor.setSpeed(0.005);
+        motor.setSpeed(0);
+        assertEquals(4, motor.getIssuedWrites());
+    }
+}
@@ -0,0 +1,39 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class AlphaBetaEstimatorTest {
+
+    /**
+     * Feeds the estimator a mechanism moving at 1 unit/s for a second, then stopped, read every millisecond from a sensor
+     * which only sends a new frame every 20 ms.
+     */
+    private static AlphaBetaEstimator readFramesFasterThanTheyArrive(long untilMicros) {
+        var estimator = new AlphaBetaEstimator(0.5, 0.1, 0.02);
+        for (var micros = 0L; micros <= untilMicros; micros += 1000) {
+            var frameMicros = Math.min(micros, 1_000_000) / 20_000 * 20_000;
+            estimator.update(frameMicros / 1e6, micros);
+        }
+        return estimator;
+    }
+
+    @Test
+    void repeatedFramesDoNotDragTheVelocityDown() {
+        var estimator = readFramesFasterThanTheyArrive(1_000_000);
+        assertEquals(1, estimator.getVelocity(), 0.05);
+
+        // In between frames, the estimate keeps moving.
+        var position = estimator.getPosition();
+        estimator.update(1, 1_010_000);
+        assertEquals(position + 0.01, estimator.getPosition(), 1e-3);
+    }
+
+    @Test
+    void repeatedFramesStillStopTheEstimateOnceTheyAreNew() {
+        var estimator = readFramesFasterThanTheyArrive(3_000_000);
+        assertEquals(0, estimator.getVelocity(), 0.01);
+        assertEquals(1, estimator.getPosition(), 0.01);
+    }
+}
@@ -0,0 +1,107 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
+import frc.robot.modules.sim.SimEnvironment;
+
+class CachedProfileFollowerTest {
+
+    private static final double PERIOD = 0.02;
+
+    private long nowMicros = 0;
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+    }
+
+    @Test
+    void skippedUpdatesDoNotSlowTheProfileDown() {
+        // Accelerates for 1 second to 1 unit/s over 0.5 units, then decelerates to a stop at 1 unit.
+        var pid = new PIDController(1, 0, 0, PERIOD);
+        var follower = new CachedProfileFollower(pid, new ProfileCache(new Constraints(1, 1), PERIOD, 4), PERIOD, () -> nowMicros);
+
+        follower.setGoal(1);
+        follower.calculate(0, 1);
+
+        // Only every 4th update runs, as if the control loop were degraded.
+        for (int update = 4; update <= 48; update += 4) {
+            nowMicros = update * 20_000;
+            follower.calculate(pid.getSetpoint(), 1);
+        }
+
+        // 0.96 seconds in, the reference is where the profile will be at the next update, still accelerating.
+        assertEquals(0.5 * 0.98 * 0.98, pid.getSetpoint(), 1e-6);
+        assertFalse(follower.atGoal());
+
+        nowMicros = 2_100_000;
+        follower.calculate(1, 1);
+        assertEquals(1, pid.getSetpoint(), 1e-9);
+        assertTrue(follower.atGoal());
+    }
+
+    @Test
+    void noisyStartsReuseTheCachedProfile() {
+        var pid = new PIDController(1, 0, 0, PERIOD);
+        pid.setTolerance(0.01);
+        var cache = new ProfileCache(new Constraints(1, 1), PERIOD, 4);
+        var follower = new CachedProfileFollower(pid, cache, PERIOD, () -> nowMicros);
+
+        follower.setGoal(1);
+        follower.calculate(0.003, 1);
+        assertEquals(1, cache.getMisses());
+
+        // Moving again from about the same place, as after an override, finds the same profile.
+        follower.restart();
+        follower.setGoal(1);
+        follower.calculate(-0.004, 1);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void nearEqualGoalsDoNotReplan() {
+        var pid = new PIDController(1, 0, 0, PERIOD);
+        pid.setTolerance(0.01);
+        var cache = new ProfileCache(new Constraints(1, 1), PERIOD, 4);
+        var follower = new CachedProfileFollower(pid, cache, PERIOD, () -> nowMicros);
+
+        follower.setGoal(1);
+        follower.calculate(0, 1);
+
+        // A goal set every cycle from a noisy measurement, like a held limit switch does.
+        for (int update = 1; update <= 10; update++) {
+            nowMicros = update * 20_000;
+            follower.setGoal(1 + ((update % 2 == 0) ? 0.004 : -0.004));
+            follower.calculate(pid.getSetpoint(), 1);
+        }
+
+        assertEquals(1, follower.getGoal());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void restartReplansFromTheMeasuredPosition() {
+        var pid = new PIDController(1, 0, 0, PERIOD);
+        var follower = new CachedProfileFollower(pid, new ProfileCache(new Constraints(1, 1), PERIOD, 4), PERIOD, () -> nowMicros);
+
+        follower.setGoal(1);
+        follower.calculate(0, 1);
+
+        // Half a second in the profile is at 0.125, but the mechanism was pushed to 0.8 while overridden.
+        nowMicros = 500_000;
+        follower.restart();
+        follower.setGoal(1);
+        follower.calculate(0.8, 1);
+
+        assertEquals(0.8 + 0.5 * PERIOD * PERIOD, pid.getSetpoint(), 1e-9);
+    }
+}
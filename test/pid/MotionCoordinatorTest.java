@@ -0,0 +1,84 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.stubs.StubSetpointController;
+
+class MotionCoordinatorTest {
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+    }
+
+    @Test
+    void replanningMidMoveKeepsTheVelocity() {
+        var axis = new StubSetpointController();
+        var coordinator = new MotionCoordinator.Builder()
+            .withAxis(axis, new Constraints(1, 1))
+            .retrieveProduct();
+
+        // Half a second into the move, the axis is at 0.125 units, moving at 0.5 units/s.
+        coordinator.moveTo(new double[] { 2 });
+        for (var i = 0; i < 25; i++) {
+            ControlLoop.run();
+        }
+        assertEquals(0.125, axis.getSetpoint(), 1e-9);
+
+        coordinator.moveTo(new double[] { 3 });
+        ControlLoop.run();
+
+        // Still accelerating from about 0.5 units/s, rather than starting over from rest. The velocity is estimated from
+        // the last two streamed setpoints, so it lags the true one slightly.
+        assertEquals(0.125 + 0.5 * 0.02 + 0.5 * 0.02 * 0.02, axis.getSetpoint(), 1e-3);
+    }
+
+    @Test
+    void aReplanWhichFailsLeavesTheMoveAsItWas() {
+        var axis = new StubSetpointController();
+        var coordinator = new MotionCoordinator.Builder()
+            .withAxis(axis, new Constraints(1, 1))
+            .withKeepOut(positions -> positions[0] > 5)
+            .retrieveProduct();
+
+        coordinator.moveTo(new double[] { 2 });
+        for (var i = 0; i < 25; i++) {
+            ControlLoop.run();
+        }
+
+        // The first sample of a replanned move, whose velocity is worked out from where that move started.
+        assertTrue(coordinator.moveTo(new double[] { 3 }));
+        ControlLoop.run();
+
+        assertFalse(coordinator.moveTo(new double[] { 10 }));
+        assertTrue(coordinator.moveTo(new double[] { 3 }));
+        var before = axis.getSetpoint();
+        ControlLoop.run();
+
+        // Still moving at about 0.5 units/s, rather than starting over from rest.
+        assertEquals(0.5 * 0.02, axis.getSetpoint() - before, 1e-3);
+    }
+
+    @Test
+    void profiledAxesAreRejected() {
+        var profiled = new RioSetpointController.Builder()
+            .usingProfiledPID(new PIDConstants(1, 0, 0), new Constraints(1, 1))
+            .withOutput(speed -> {})
+            .withCurrentPositionSupplier(() -> 0, () -> {})
+            .retrieveProduct();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new MotionCoordinator.Builder().withAxis(profiled, new Constraints(1, 1)));
+    }
+}
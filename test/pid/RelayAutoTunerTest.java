@@ -0,0 +1,88 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.sim.SimHarness;
+import frc.robot.modules.sim.SimMotorController;
+import frc.robot.modules.stubs.StubSetpointController;
+
+/**
+ * Runs the auto-tuner off-robot, against a simulated motor.
+ */
+class RelayAutoTunerTest {
+
+    @Test
+    void reversesAtALimitSwitchInsteadOfAborting() {
+        var harness = new SimHarness(0.02);
+        var gearbox = DCMotor.getNEO(1);
+        var motor = SimMotorController.fromDCMotorSim(
+            new DCMotorSim(LinearSystemId.createDCMotorSystem(gearbox, 0.01, 50), gearbox));
+        harness.withMotor(motor);
+
+        var controller = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(1, 0, 0))
+            .usingMotorController(motor)
+            .withCurrentPositionSupplier(motor::getEncoderPosition, motor::resetEncoder)
+            .withAutoTuner(0.2, 0.05, 2)
+            .retrieveProduct();
+        // Pressed before the mechanism gets past the hysteresis, so the relay can only flip there because of the switch.
+        controller.withLimitSwitches(motor.createVirtualLimitSwitch(0.03, true, false), null);
+        harness.setEnabled(true);
+        harness.step();
+
+        var tuner = controller.getAutoTuner();
+        tuner.start(0);
+        var maxPosition = new double[] { Double.NEGATIVE_INFINITY };
+        harness.runUntil(() -> {
+            maxPosition[0] = Math.max(maxPosition[0], motor.getTruePosition());
+            return tuner.getState() != RelayAutoTuner.State.RUNNING;
+        }, 20);
+
+        assertEquals(RelayAutoTuner.State.FINISHED, tuner.getState());
+        assertTrue(maxPosition[0] >= 0.03);
+        assertTrue(maxPosition[0] < 0.05 + 0.1, "The mechanism drove into the switch, up to " + maxPosition[0]);
+        assertTrue(tuner.getUltimateGain() > 0);
+    }
+
+    @Test
+    void identifiesANominalPlant() {
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+        SimHooks.pauseTiming();
+
+        // A plant whose velocity is twice the output, sampled every 20 ms, so that a relay of 0.5 moves it 0.02 per cycle.
+        // With a hysteresis of 0.11, it flips one cycle after crossing it, at 0.12, so it oscillates in a triangle wave
+        // between -0.12 and 0.12, with a period of 24 cycles.
+        var plant = new StubSetpointController();
+        var tuner = new RelayAutoTuner(plant, 0.5, 0.11, 1, 3, 20);
+        tuner.start(0);
+        for (var i = 0; i < 500 && tuner.getState() == RelayAutoTuner.State.RUNNING; i++) {
+            ControlLoop.run();
+            plant.setCurrentPosition(plant.getCurrentPosition() + 2 * plant.getOutput() * 0.02);
+            SimHooks.stepTiming(0.02);
+        }
+        assertEquals(RelayAutoTuner.State.FINISHED, tuner.getState());
+
+        var ultimatePeriod = 24 * 0.02;
+        var ultimateGain = 4 * 0.5 / (Math.PI * Math.sqrt(0.12 * 0.12 - 0.11 * 0.11));
+        assertEquals(ultimatePeriod, tuner.getUltimatePeriod(), 1e-6);
+        assertEquals(ultimateGain, tuner.getUltimateGain(), 1e-6);
+
+        // The Ziegler-Nichols "some overshoot" rule.
+        var constants = tuner.getProposedConstants();
+        assertEquals(0.33 * ultimateGain, constants.kP, 1e-6);
+        assertEquals(0.66 * ultimateGain / ultimatePeriod, constants.kI, 1e-6);
+        assertEquals(0.11 * ultimateGain * ultimatePeriod, constants.kD, 1e-6);
+    }
+}
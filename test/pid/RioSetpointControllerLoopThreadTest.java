@@ -0,0 +1,102 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.modules.sim.SimEnvironment;
+
+/**
+ * Tests {@link RioSetpointController.Builder#runAt(double)} against the simulated HAL, with the simulated clock paused so
+ * that the loop thread only runs when the clock is stepped.
+ */
+class RioSetpointControllerLoopThreadTest {
+
+    private static final double PERIOD = 0.001;
+
+    private volatile double position = 0;
+    private volatile Thread resetThread;
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimHooks.pauseTiming();
+        SimEnvironment.setEnabled(true);
+    }
+
+    @Test
+    void mainThreadSeesTheLoopThreadsState() throws InterruptedException {
+        var controller = new RioSetpointController.Builder()
+            .runAt(PERIOD)
+            .usingStandardPID(new PIDConstants(1, 0, 0))
+            .withOutput(speed -> {})
+            .withCurrentPositionSupplier(() -> position, () -> {
+                resetThread = Thread.currentThread();
+                position = 0;
+            })
+            .retrieveProduct();
+
+        controller.setSetpoint(0);
+        assertTrue(stepUntil(controller::atSetpoint));
+
+        // The loop thread has not run since, so it cannot have applied the new setpoint, even though the old one was reached.
+        controller.setSetpoint(1);
+        assertFalse(controller.atSetpoint());
+        assertEquals(1, controller.getSetpoint());
+
+        position = 1;
+        assertTrue(stepUntil(controller::atSetpoint));
+        assertEquals(1, controller.getCurrentPosition());
+
+        controller.resetPosition();
+        assertTrue(stepUntil(() -> controller.getCurrentPosition() == 0));
+        assertNotSame(Thread.currentThread(), resetThread);
+        assertFalse(controller.atSetpoint());
+    }
+
+    @Test
+    void estimatorIsResetOnTheLoopThread() throws InterruptedException {
+        var controller = new RioSetpointController.Builder()
+            .runAt(PERIOD)
+            .usingStandardPID(new PIDConstants(1, 0, 0))
+            .withOutput(speed -> {})
+            .withCurrentPositionSupplier(() -> position, () -> position = 0)
+            .withEstimator(0.5, 0.1, 0)
+            .retrieveProduct();
+
+        // Moves at 1 unit/s while the loop thread estimates the velocity.
+        position = 0;
+        for (int i = 0; i < 100; i++) {
+            position += PERIOD;
+            SimHooks.stepTiming(PERIOD);
+            Thread.sleep(1);
+        }
+        assertTrue(stepUntil(() -> controller.getEstimatedVelocity() > 0.5));
+
+        controller.resetPosition();
+        assertTrue(stepUntil(() -> controller.getCurrentPosition() == 0));
+        assertEquals(0, controller.getEstimatedVelocity());
+    }
+
+    /**
+     * Steps the simulated clock one loop period at a time, until the condition is met or a simulated second has passed.
+     */
+    private static boolean stepUntil(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            SimHooks.stepTiming(PERIOD);
+            // The loop thread runs asynchronously, so give it a moment to finish its iteration.
+            Thread.sleep(1);
+            if (condition.getAsBoolean()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import frc.robot.modules.Allocations;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.sim.SimEnvironment;
+
+class RioSetpointControllerTest {
+
+    private double position;
+    private double output;
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+    }
+
+    @Test
+    void steadyStateUpdateDoesNotAllocate() {
+        var controller = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(0.1, 0, 0.01))
+            .withOutput(speed -> output = speed)
+            .withCurrentPositionSupplier(() -> position, () -> position = 0)
+            .retrieveProduct();
+        controller.setSetpoint(10);
+
+        var allocated = Allocations.measure(() -> {
+            position = (position > 20) ? 0 : position + 0.1;
+            ControlLoop.run();
+        }, 20_000, 1_000);
+
+        assertEquals(0, allocated, "A steady state update allocated " + allocated + " bytes!");
+        assertNotEquals(0, output);
+    }
+}
@@ -0,0 +1,55 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import frc.robot.modules.Allocations;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.LimitSwitch;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.stubs.StubSetpointController;
+
+class SetpointControllerTest {
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+    }
+
+    @Test
+    void heldSwitchOnlySetsTheSetpointOnce() {
+        var controller = new StubSetpointController();
+        controller.withLimitSwitches(new LimitSwitch(() -> true, false, false), null);
+        controller.setCurrentPosition(0.5);
+        controller.setSetpoint(1);
+
+        for (int i = 0; i < 10; i++) {
+            ControlLoop.run();
+        }
+
+        assertEquals(0.5, controller.getSetpoint());
+        assertEquals(2, controller.getSetpointsSet());
+    }
+
+    @Test
+    void heldSwitchDoesNotAllocate() {
+        var position = new double[] {0.5};
+        var controller = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(0.1, 0, 0.01))
+            .withOutput(speed -> {})
+            .withCurrentPositionSupplier(() -> position[0], () -> position[0] = 0)
+            .withLimitSwitches(new LimitSwitch(() -> true, false, false), new LimitSwitch(() -> false, false, false))
+            .retrieveProduct();
+        controller.setSetpoint(1);
+
+        var allocated = Allocations.measure(ControlLoop::run, 20_000, 1_000);
+
+        assertEquals(0, allocated, "A control loop pass with a held limit switch allocated " + allocated + " bytes!");
+        assertEquals(0.5, controller.getSetpoint());
+    }
+}
@@ -0,0 +1,151 @@
+package frc.robot.modules.pid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.util.datalog.DataLogWriter;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.logging.ControlRecorder;
+import frc.robot.modules.sim.SimEnvironment;
+
+class SetpointReplayTest {
+
+    private static final int ENABLED = ReplayRecording.ENABLED;
+
+    @TempDir
+    File directory;
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+        SimHooks.pauseTiming();
+    }
+
+    private static RioSetpointController.Builder createBuilder() {
+        return new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(1, 0, 0))
+            .withEstimator(0.5, 0.1, 0.02);
+    }
+
+    /**
+     * Records a mechanism moving at 5 units/s for 10 updates, then having its position reset to 0.
+     */
+    private static ReplayRecording recordMoveAndReset(int resetFlags) {
+        var recording = new ReplayRecording();
+        recording.add(0, 2, 0, 0, ENABLED | ReplayRecording.SETPOINT_SET);
+        for (var i = 1; i < 10; i++) {
+            recording.add(i * 20_000, 2, i * 0.1, 0, ENABLED);
+        }
+        recording.add(200_000, 2, 0, 0, ENABLED | resetFlags);
+        return recording;
+    }
+
+    private static double replayFreshStart() {
+        var fresh = new ReplayRecording();
+        fresh.add(200_000, 2, 0, 0, ENABLED | ReplayRecording.SETPOINT_SET);
+        return SetpointReplay.replay(createBuilder(), fresh, 0).getOutput(0);
+    }
+
+    @Test
+    void positionResetsStartTheEstimatorOver() {
+        var expected = replayFreshStart();
+
+        var reset = SetpointReplay.replay(createBuilder(), recordMoveAndReset(ReplayRecording.POSITION_RESET), 0);
+        assertEquals(expected, reset.getOutput(10), 1e-9);
+
+        // Without the reset, the estimator takes the reset for a sudden jump, and is still extrapolating the old velocity.
+        var unreset = SetpointReplay.replay(createBuilder(), recordMoveAndReset(0), 0);
+        assertNotEquals(expected, unreset.getOutput(10), 1e-3);
+    }
+
+    @Test
+    void discontinuitiesPastTheThresholdAreResets() {
+        var builder = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(1, 0, 0))
+            .withEstimator(0.5, 0.1, 0.02, 0.5);
+
+        var unflagged = SetpointReplay.replay(builder, recordMoveAndReset(0), 0);
+        assertEquals(replayFreshStart(), unflagged.getOutput(10), 1e-9);
+    }
+
+    @Test
+    void theSetpointIsAppliedWithoutBeingFlagged() {
+        var recording = new ReplayRecording();
+        recording.add(200_000, 2, 0, 0, ENABLED);
+
+        assertEquals(replayFreshStart(), SetpointReplay.replay(createBuilder(), recording, 0).getOutput(0), 1e-9);
+    }
+
+    @Test
+    void replaysALiveControllerWithoutDiverging() throws IOException {
+        var file = new File(directory, "live.wpilog");
+        var log = new DataLogWriter(file.getPath());
+        var recorder = new ControlRecorder(log, 3600);
+
+        var position = new double[1];
+        var output = new double[1];
+        var controller = createBuilder()
+            .withOutput(speed -> output[0] = speed)
+            .withCurrentPositionSupplier(() -> position[0], () -> position[0] = 0)
+            .withRecorder(recorder, "arm", 256)
+            .retrieveProduct();
+
+        controller.setSetpoint(2);
+        for (var i = 0; i < 100; i++) {
+            switch (i) {
+                case 40 -> controller.resetPosition();
+                case 60 -> controller.setSetpoint(1);
+                case 70 -> controller.overrideOutput(0.1);
+                case 80 -> controller.setSetpoint(3);
+                default -> {}
+            }
+            ControlLoop.run();
+            SimHooks.stepTiming(0.02);
+            position[0] += output[0] * 0.1;
+        }
+        recorder.flush();
+        log.close();
+
+        var recording = ReplayRecording.fromLog(file.getPath(), "arm");
+        assertEquals(100, recording.size());
+
+        var result = SetpointReplay.replay(createBuilder(), recording, 0);
+        assertEquals(0, result.getDivergences());
+        assertEquals(0, result.getMaxError());
+    }
+
+    @Test
+    void logsWithMisalignedChannelsAreRejected() throws IOException {
+        var file = new File(directory, "cut.wpilog");
+        var log = new DataLogWriter(file.getPath());
+        var setpoint = new DoubleLogEntry(log, "arm/setpoint");
+        var position = new DoubleLogEntry(log, "arm/position");
+        var output = new DoubleLogEntry(log, "arm/output");
+        var flags = new IntegerLogEntry(log, "arm/flags");
+
+        // The log was cut off partway through the second sample.
+        setpoint.append(2, 1000);
+        position.append(0, 1000);
+        output.append(0, 1000);
+        flags.append(ENABLED, 1000);
+        setpoint.append(2, 2000);
+        position.append(0.1, 2000);
+        log.close();
+
+        assertThrows(IllegalArgumentException.class, () -> ReplayRecording.fromLog(file.getPath(), "arm"));
+    }
+}
@@ -0,0 +1,55 @@
+package frc.robot.modules.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.modules.pid.RioSetpointController;
+
+class SimHarnessTest {
+
+    private static SimMotorController createMotor() {
+        var gearbox = DCMotor.getNEO(1);
+        return SimMotorController.fromDCMotorSim(
+            new DCMotorSim(LinearSystemId.createDCMotorSystem(gearbox, 0.004, 10), gearbox));
+    }
+
+    @Test
+    void stepsAdvanceTheClockAndThePhysicsTogether() {
+        var motor = createMotor();
+        var harness = new SimHarness(0.02).withMotor(motor);
+        harness.setEnabled(true);
+
+        var start = Timer.getFPGATimestamp();
+        motor.setSpeed(0.5);
+        harness.run(1);
+
+        assertEquals(1, harness.getElapsedSeconds(), 1e-9);
+        assertEquals(1, Timer.getFPGATimestamp() - start, 1e-6);
+        assertTrue(motor.getTruePosition() > 0);
+        assertEquals(motor.getTruePosition(), motor.getEncoderPosition());
+    }
+
+    @Test
+    void setpointControllerReachesItsSetpoint() {
+        var motor = createMotor();
+        var harness = new SimHarness(0.02).withMotor(motor);
+        var controller = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(2, 0, 0.05))
+            .usingMotorController(motor)
+            .withCurrentPositionSupplier(motor::getEncoderPosition, motor::resetEncoder)
+            .retrieveProduct();
+        harness.setEnabled(true);
+
+        controller.setSetpoint(1);
+        assertTrue(harness.runUntil(controller::atSetpoint, 5));
+        assertEquals(1, motor.getTruePosition(), 0.05);
+    }
+}
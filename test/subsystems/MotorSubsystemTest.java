@@ -0,0 +1,61 @@
+package frc.robot.modules.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.modules.ValueEnum;
+import frc.robot.modules.sim.SimEnvironment;
+import frc.robot.modules.stubs.StubMotorController;
+
+class MotorSubsystemTest {
+
+    private enum Speed implements ValueEnum<Double> {
+        INTAKE(0.5);
+
+        private final double value;
+
+        Speed(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public Double getConstantValue() {
+            return value;
+        }
+    }
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+    }
+
+    @Test
+    void commandsCanStillBeScheduledAfterOneWasComposed() {
+        var motor = new StubMotorController();
+        var subsystem = new MotorSubsystem.Builder()
+            .withMotorController(motor)
+            .retrieveProduct();
+
+        // Scheduling a command which is part of a composition throws, so each call must return a new one.
+        var sequence = subsystem.runAt(Speed.INTAKE).withTimeout(1).andThen(subsystem.stop());
+        var runAt = subsystem.runAt(Speed.INTAKE);
+
+        CommandScheduler.getInstance().schedule(runAt);
+        CommandScheduler.getInstance().run();
+        assertTrue(runAt.isScheduled());
+        assertEquals(0.5, motor.getSpeed());
+
+        CommandScheduler.getInstance().schedule(subsystem.stop());
+        CommandScheduler.getInstance().run();
+        assertEquals(0, motor.getSpeed());
+
+        CommandScheduler.getInstance().schedule(sequence);
+        CommandScheduler.getInstance().run();
+        assertTrue(sequence.isScheduled());
+    }
+}
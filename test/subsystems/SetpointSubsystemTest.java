@@ -0,0 +1,95 @@
+package frc.robot.modules.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.config.PIDConstants;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.modules.ControlLoop;
+import frc.robot.modules.ValueEnum;
+import frc.robot.modules.pid.RioSetpointController;
+import frc.robot.modules.sim.SimEnvironment;
+
+class SetpointSubsystemTest {
+
+    private enum Position implements ValueEnum<Double> {
+        EXTENDED(1.0);
+
+        private final double value;
+
+        Position(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public Double getConstantValue() {
+            return value;
+        }
+    }
+
+    @BeforeAll
+    static void initializeHal() {
+        SimEnvironment.initializeHAL();
+        SimEnvironment.setEnabled(true);
+    }
+
+    @Test
+    void goToWaitsForTheGoalOfAProfile() {
+        // The mechanism never moves, so it keeps up with the start of the profile, but never reaches the goal.
+        var controller = new RioSetpointController.Builder()
+            .usingProfiledPID(new PIDConstants(1, 0, 0), new Constraints(1, 1))
+            .withOutput(speed -> {})
+            .withCurrentPositionSupplier(() -> 0, () -> {})
+            .retrieveProduct();
+        var subsystem = new SetpointSubsystem.Builder()
+            .withSetpointController(controller)
+            .retrieveProduct();
+
+        var command = subsystem.goTo(Position.EXTENDED);
+        CommandScheduler.getInstance().schedule(command);
+        for (var i = 0; i < 5; i++) {
+            CommandScheduler.getInstance().run();
+            ControlLoop.finishCycle();
+        }
+
+        assertTrue(command.isScheduled());
+        assertFalse(subsystem.atSetpoint());
+    }
+
+    @Test
+    void commandsCanStillBeScheduledAfterOneWasComposed() {
+        var controller = new RioSetpointController.Builder()
+            .usingStandardPID(new PIDConstants(1, 0, 0))
+            .withOutput(speed -> {})
+            .withCurrentPositionSupplier(() -> 0, () -> {})
+            .retrieveProduct();
+        var subsystem = new SetpointSubsystem.Builder()
+            .withSetpointController(controller)
+            .retrieveProduct();
+
+        // Scheduling a command which is part of a composition throws, so each call must return a new one.
+        var sequence = subsystem.goTo(Position.EXTENDED).andThen(subsystem.hold());
+        var hold = subsystem.hold();
+        var goTo = subsystem.goTo(Position.EXTENDED);
+        assertNotSame(hold, subsystem.hold());
+
+        CommandScheduler.getInstance().schedule(goTo);
+        CommandScheduler.getInstance().run();
+        assertTrue(goTo.isScheduled());
+
+        CommandScheduler.getInstance().schedule(hold);
+        CommandScheduler.getInstance().run();
+        assertTrue(hold.isScheduled());
+        assertFalse(goTo.isScheduled());
+
+        CommandScheduler.getInstance().schedule(sequence);
+        CommandScheduler.getInstance().run();
+        assertTrue(sequence.isScheduled());
+    }
+}